@@ -0,0 +1,6 @@
+package pocs;
+
+// What a projected cell held, a DATE is a number cell with a date format
+public enum CellKind {
+    BLANK, NUMBER, DATE, BOOLEAN, STRING, ERROR
+}
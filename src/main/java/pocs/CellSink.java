@@ -0,0 +1,106 @@
+package pocs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Where ExcelExtractor puts the cells it reads, instead of printing them
+// Different sheets are extracted on different threads at the same time, so a sink has to be thread safe
+// across sheets. The cells of one sheet always come from one thread, in row order, between startSheet
+// and endSheet.
+public interface CellSink {
+
+    default void startSheet(ExcelSheet sheet) {
+    }
+
+    void cell(ExcelSheet sheet, int row, int column, String value);
+
+    default void endSheet(ExcelSheet sheet, int rows) {
+    }
+
+    // Instead of endSheet when reading the sheet or a cell call failed, to release what startSheet took
+    default void abortSheet(ExcelSheet sheet, Exception failure) {
+    }
+
+    // Offers every cell to the queue, blocking while it is full so a slow consumer slows extraction down
+    static CellSink toQueue(BlockingQueue<ExtractedCell> queue) {
+        return (sheet, row, column, value) -> {
+            try {
+                queue.put(new ExtractedCell(sheet, row, column, value));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing cells of " + sheet, e);
+            }
+        };
+    }
+
+    // One text file per sheet in the directory, a line of row, column and value separated by tabs per cell
+    // Files are named <workbook index>-<workbook name>-<sheet index>.txt, so workbooks with the same name
+    // from different directories never share a file.
+    // Each file is written by one thread in row order, so the output does not depend on scheduling.
+    static CellSink toDirectory(Path directory) {
+        Map<ExcelSheet, Writer> writers = new ConcurrentHashMap<>();
+        return new CellSink() {
+
+            @Override
+            public void startSheet(ExcelSheet sheet) {
+                try {
+                    writers.put(sheet, Files.newBufferedWriter(file(sheet), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void cell(ExcelSheet sheet, int row, int column, String value) {
+                try {
+                    Writer writer = writers.get(sheet);
+                    writer.write(Integer.toString(row));
+                    writer.write('\t');
+                    writer.write(Integer.toString(column));
+                    writer.write('\t');
+                    writer.write(value);
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void endSheet(ExcelSheet sheet, int rows) {
+                try (Writer writer = writers.remove(sheet)) {
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            // Closes the writer and removes the partial file, so the directory only holds complete sheets
+            @Override
+            public void abortSheet(ExcelSheet sheet, Exception failure) {
+                Writer writer = writers.remove(sheet);
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    writer.close();
+                    Files.deleteIfExists(file(sheet));
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+
+            private Path file(ExcelSheet sheet) {
+                return directory.resolve(sheet.getWorkbookIndex() + "-" + sheet.getWorkbook().getName() + "-" + sheet.getSheetIndex() + ".txt");
+            }
+        };
+    }
+
+}
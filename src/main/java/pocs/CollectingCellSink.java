@@ -0,0 +1,40 @@
+package pocs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the values of every sheet in memory, the same lists whatever order the sheets finished in
+public class CollectingCellSink implements CellSink {
+
+    private final Map<ExcelSheet, List<String>> values = new ConcurrentHashMap<>();
+
+    @Override
+    public void startSheet(ExcelSheet sheet) {
+        values.put(sheet, new ArrayList<>());
+    }
+
+    // Only the thread reading the sheet touches its list
+    @Override
+    public void cell(ExcelSheet sheet, int row, int column, String value) {
+        values.get(sheet).add(value);
+    }
+
+    // Sheets in workbook and sheet order, each with its values in row order
+    public Map<ExcelSheet, List<String>> getValues() {
+        Map<ExcelSheet, List<String>> ordered = new TreeMap<>();
+        values.forEach((sheet, list) -> ordered.put(sheet, Collections.unmodifiableList(list)));
+        return Collections.unmodifiableMap(ordered);
+    }
+
+    // Every value, sheet after sheet
+    public List<String> getAllValues() {
+        List<String> all = new ArrayList<>();
+        getValues().values().forEach(all::addAll);
+        return all;
+    }
+
+}
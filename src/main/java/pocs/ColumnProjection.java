@@ -0,0 +1,60 @@
+package pocs;
+
+import java.util.Arrays;
+
+// The columns a projected read keeps, every other cell is skipped while the sheet is parsed
+// Columns are picked by 0 based index, or by the text of the first row, which is then not handed on
+// as data. Either way ProjectedRow slot i is the i-th column given here.
+public final class ColumnProjection {
+
+    private final int[] indexes;
+
+    private final String[] names;
+
+    private ColumnProjection(int[] indexes, String[] names) {
+        this.indexes = indexes;
+        this.names = names;
+    }
+
+    public static ColumnProjection columns(int... indexes) {
+        if (indexes.length == 0) {
+            throw new IllegalArgumentException("Project at least one column");
+        }
+        for (int index : indexes) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Column index must not be negative: " + index);
+            }
+        }
+        return new ColumnProjection(indexes.clone(), null);
+    }
+
+    // Columns whose header cell in the first row has the given text, compared case insensitively and trimmed
+    public static ColumnProjection named(String... names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("Project at least one column");
+        }
+        return new ColumnProjection(null, names.clone());
+    }
+
+    public int size() {
+        return indexes != null ? indexes.length : names.length;
+    }
+
+    boolean hasHeader() {
+        return names != null;
+    }
+
+    int[] getIndexes() {
+        return indexes;
+    }
+
+    String[] getNames() {
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnProjection " + (indexes != null ? Arrays.toString(indexes) : Arrays.toString(names));
+    }
+
+}
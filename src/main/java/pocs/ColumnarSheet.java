@@ -0,0 +1,387 @@
+package pocs;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Binary columnar copy of a projected sheet read, what ExcelColumnCache keeps instead of the workbook
+// Layout: [magic][version][date1904][rows][columns][errors], the projected sheet columns, the sheet row
+// numbers, then per column the kinds (one byte per row), the numbers (a double per row), the string
+// offsets (rows + 1 ints) and the UTF-8 string bytes, and last the errors as [rows before it][row][column][message].
+// Replaying maps the file and feeds the same ProjectedRows and RowErrors the first read produced, in the same
+// order: every error the reader reported is kept with the number of rows delivered before it, so errors on
+// rows that produced no ProjectedRow and errors after the last row come back too.
+final class ColumnarSheet {
+
+    private static final int MAGIC = 0x58434F4C;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    // rows before it, row, column and message length, -1 for a null message
+    private static final int ERROR_HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final CellKind[] KINDS = CellKind.values();
+
+    private ColumnarSheet() {
+    }
+
+    // Feeds every row and cell error of the mapped file to the handler, returns the number of rows
+    // Errors the handler itself caused are not in the file, its row failing again reports them once more.
+    // Every section size is checked against the file first, so a truncated or damaged file fails with an
+    // IOException before the handler has seen a single row.
+    static int replay(Path file, RowHandler handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Columnar file " + file + " is larger than 2GB");
+            }
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Columnar file " + file + " is truncated");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a columnar sheet");
+        }
+        boolean date1904 = buffer.getInt(8) != 0;
+        int rows = buffer.getInt(12);
+        int columnCount = buffer.getInt(16);
+        int errorCount = buffer.getInt(20);
+        long size = buffer.capacity();
+        long position = HEADER_BYTES + (long) columnCount * Integer.BYTES + (long) rows * Integer.BYTES;
+        if (rows < 0 || columnCount < 0 || errorCount < 0 || position > size) {
+            throw new IOException("Columnar file " + file + " is truncated");
+        }
+        int[] columns = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = buffer.getInt(HEADER_BYTES + i * Integer.BYTES);
+        }
+        int rowNumbers = HEADER_BYTES + columnCount * Integer.BYTES;
+        int[] kinds = new int[columnCount];
+        int[] numbers = new int[columnCount];
+        int[] offsets = new int[columnCount];
+        int[] strings = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            long stringBytes = position + rows + (long) rows * Double.BYTES + (long) rows * Integer.BYTES;
+            if (stringBytes + Integer.BYTES > size) {
+                throw new IOException("Columnar file " + file + " is truncated");
+            }
+            kinds[i] = (int) position;
+            numbers[i] = kinds[i] + rows;
+            offsets[i] = numbers[i] + rows * Double.BYTES;
+            strings[i] = offsets[i] + (rows + 1) * Integer.BYTES;
+            position = strings[i] + (long) buffer.getInt((int) stringBytes);
+            if (position < strings[i] || position > size) {
+                throw new IOException("Columnar file " + file + " is truncated");
+            }
+        }
+        int errorStart = (int) position;
+        for (int i = 0; i < errorCount; i++) {
+            if (position + ERROR_HEADER_BYTES > size) {
+                throw new IOException("Columnar file " + file + " is truncated");
+            }
+            int length = buffer.getInt((int) position + 3 * Integer.BYTES);
+            if (length < -1) {
+                throw new IOException("Columnar file " + file + " is damaged");
+            }
+            position += ERROR_HEADER_BYTES + (long) Math.max(length, 0);
+        }
+        if (position != size) {
+            throw new IOException("Columnar file " + file + " has " + size + " bytes, its header describes " + position);
+        }
+
+        ProjectedRow row = new ProjectedRow(columns, date1904);
+        int errors = 0;
+        int error = errorStart;
+        for (int r = 0; r < rows; r++) {
+            // errors reported before this row, as they were while parsing
+            while (errors < errorCount && buffer.getInt(error) <= r) {
+                error = replayError(buffer, error, handler);
+                errors++;
+            }
+            int rowNumber = buffer.getInt(rowNumbers + r * Integer.BYTES);
+            row.reset(rowNumber);
+            for (int slot = 0; slot < columnCount; slot++) {
+                CellKind kind = KINDS[buffer.get(kinds[slot] + r)];
+                switch (kind) {
+                    case NUMBER:
+                    case DATE:
+                        row.setNumber(slot, buffer.getDouble(numbers[slot] + r * Double.BYTES), kind == CellKind.DATE);
+                        break;
+                    case BOOLEAN:
+                        row.setBoolean(slot, buffer.getDouble(numbers[slot] + r * Double.BYTES) != 0);
+                        break;
+                    case STRING:
+                        row.setString(slot, string(buffer, offsets[slot], strings[slot], r));
+                        break;
+                    case ERROR:
+                        row.setError(slot, string(buffer, offsets[slot], strings[slot], r));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            try {
+                handler.row(row);
+            } catch (RuntimeException e) {
+                handler.error(new RowError(rowNumber, -1, e.getMessage(), e));
+            }
+        }
+        for (; errors < errorCount; errors++) {
+            error = replayError(buffer, error, handler);
+        }
+        return rows;
+    }
+
+    // Reports the error at position, returns the position of the next one
+    private static int replayError(ByteBuffer buffer, int position, RowHandler handler) {
+        int row = buffer.getInt(position + Integer.BYTES);
+        int column = buffer.getInt(position + 2 * Integer.BYTES);
+        int length = buffer.getInt(position + 3 * Integer.BYTES);
+        String message = length < 0 ? null : decode(buffer, position + ERROR_HEADER_BYTES, length);
+        handler.error(new RowError(row, column, message, null));
+        return position + ERROR_HEADER_BYTES + Math.max(length, 0);
+    }
+
+    private static String string(ByteBuffer buffer, int offsets, int strings, int row) {
+        int start = buffer.getInt(offsets + row * Integer.BYTES);
+        int end = buffer.getInt(offsets + (row + 1) * Integer.BYTES);
+        return decode(buffer, strings + start, end - start);
+    }
+
+    private static String decode(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Passes rows on to the caller's handler while spilling a columnar copy of them to scratch files, one
+    // per section and column, so a miss holds a few buffers per column instead of the whole sheet
+    // write joins the parts into the columnar file, close deletes them.
+    static final class Recorder implements RowHandler, Closeable {
+
+        private static final int BUFFER_BYTES = 16 * 1024;
+
+        private final RowHandler handler;
+
+        private final Path directory;
+
+        private int[] columns;
+
+        private boolean date1904;
+
+        private int rows;
+
+        private Part rowNumbers;
+
+        private Part[] kinds;
+
+        private Part[] numbers;
+
+        private Part[] offsets;
+
+        private Part[] strings;
+
+        // bytes in each column's strings part so far, the next offset
+        private long[] stringBytes;
+
+        private Part errors;
+
+        private int errorCount;
+
+        // the first failure to spill, recording stops and write throws it
+        private IOException failure;
+
+        Recorder(RowHandler handler, Path directory) {
+            this.handler = handler;
+            this.directory = directory;
+        }
+
+        // Recorded before the caller sees the row, so a row the caller fails on is cached all the same
+        @Override
+        public void row(ProjectedRow row) {
+            if (failure == null) {
+                try {
+                    record(row);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            handler.row(row);
+        }
+
+        // Errors of the caller's own handler, the ones with a cause, are not part of the sheet and are not kept
+        @Override
+        public void error(RowError error) {
+            if (failure == null && error.getCause() == null) {
+                try {
+                    if (errors == null) {
+                        errors = new Part(directory);
+                    }
+                    byte[] message = error.getMessage() == null ? null : error.getMessage().getBytes(StandardCharsets.UTF_8);
+                    errors.out.writeInt(rows);
+                    errors.out.writeInt(error.getRow());
+                    errors.out.writeInt(error.getColumn());
+                    errors.out.writeInt(message == null ? -1 : message.length);
+                    if (message != null) {
+                        errors.out.write(message);
+                    }
+                    errorCount++;
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            handler.error(error);
+        }
+
+        private void record(ProjectedRow row) throws IOException {
+            if (columns == null) {
+                start(row);
+            }
+            rowNumbers.out.writeInt(row.getRowNumber());
+            for (int slot = 0; slot < columns.length; slot++) {
+                CellKind kind = row.getKind(slot);
+                boolean text = kind == CellKind.STRING || kind == CellKind.ERROR;
+                kinds[slot].out.writeByte(kind.ordinal());
+                numbers[slot].out.writeDouble(text ? 0 : row.getNumber(slot));
+                offsets[slot].out.writeInt((int) stringBytes[slot]);
+                if (text) {
+                    byte[] bytes = row.getRawString(slot).getBytes(StandardCharsets.UTF_8);
+                    stringBytes[slot] += bytes.length;
+                    if (stringBytes[slot] > Integer.MAX_VALUE) {
+                        throw new IOException("Column " + columns[slot] + " is too large to cache");
+                    }
+                    strings[slot].out.write(bytes);
+                }
+            }
+            rows++;
+        }
+
+        private void start(ProjectedRow row) throws IOException {
+            columns = new int[row.size()];
+            for (int slot = 0; slot < columns.length; slot++) {
+                columns[slot] = row.getColumn(slot);
+            }
+            date1904 = row.isDate1904();
+            rowNumbers = new Part(directory);
+            kinds = new Part[columns.length];
+            numbers = new Part[columns.length];
+            offsets = new Part[columns.length];
+            strings = new Part[columns.length];
+            stringBytes = new long[columns.length];
+            for (int slot = 0; slot < columns.length; slot++) {
+                kinds[slot] = new Part(directory);
+                numbers[slot] = new Part(directory);
+                offsets[slot] = new Part(directory);
+                strings[slot] = new Part(directory);
+            }
+        }
+
+        void write(Path file) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            int columnCount = columns == null ? 0 : columns.length;
+            List<Part> parts = new ArrayList<>();
+            if (rowNumbers != null) {
+                parts.add(rowNumbers);
+            }
+            for (int slot = 0; slot < columnCount; slot++) {
+                offsets[slot].out.writeInt((int) stringBytes[slot]);
+                parts.add(kinds[slot]);
+                parts.add(numbers[slot]);
+                parts.add(offsets[slot]);
+                parts.add(strings[slot]);
+            }
+            if (errors != null) {
+                parts.add(errors);
+            }
+            long size = HEADER_BYTES + (long) columnCount * Integer.BYTES;
+            for (Part part : parts) {
+                part.out.close();
+                size += Files.size(part.file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Sheet is too large to cache: " + size + " bytes");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + columnCount * Integer.BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(date1904 ? 1 : 0).putInt(rows).putInt(columnCount).putInt(errorCount);
+            for (int slot = 0; slot < columnCount; slot++) {
+                header.putInt(columns[slot]);
+            }
+            header.flip();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (Part part : parts) {
+                    try (FileChannel in = FileChannel.open(part.file, StandardOpenOption.READ)) {
+                        long position = 0;
+                        long length = in.size();
+                        while (position < length) {
+                            position += in.transferTo(position, length - position, channel);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Deletes the scratch files, whether or not write ran
+        @Override
+        public void close() {
+            // a failed start can leave any of these null or half filled
+            List<Part> parts = new ArrayList<>(Arrays.asList(rowNumbers, errors));
+            for (Part[] column : new Part[][]{kinds, numbers, offsets, strings}) {
+                if (column != null) {
+                    parts.addAll(Arrays.asList(column));
+                }
+            }
+            for (Part part : parts) {
+                if (part != null) {
+                    part.delete();
+                }
+            }
+        }
+    }
+
+    // One scratch file of a Recorder and the buffered stream that fills it
+    private static final class Part {
+
+        private final Path file;
+
+        private final DataOutputStream out;
+
+        private Part(Path directory) throws IOException {
+            file = Files.createTempFile(directory, "sheet", ".part");
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), Recorder.BUFFER_BYTES));
+        }
+
+        private void delete() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // the file goes anyway
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // left for the next cleanup of the directory
+            }
+        }
+    }
+
+}
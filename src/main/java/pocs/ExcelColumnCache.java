@@ -0,0 +1,284 @@
+package pocs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Keeps projected reads of workbooks as ColumnarSheet files, so reading the same .xlsx again skips POI
+// A cached file is named after the SHA-256 of the workbook's content and the projection, so a copy or a
+// renamed workbook hits as well and an edited one never does. Hashing is skipped while a workbook's size
+// and modification time are still the ones recorded in the index file of the directory.
+// The directory is kept under maxBytes by deleting the least recently read files, a hit touches the
+// file's modification time so the order survives restarts.
+public class ExcelColumnCache {
+
+    // Directory of the cache used by ReadWriteColumnFromExcel when set
+    public static final String DIRECTORY_PROPERTY = "excel.cache.dir";
+
+    private static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    private static final String SUFFIX = ".col";
+
+    private static final String INDEX = "index.tsv";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    // workbook path to its size, modification time and hash when last read, guarded by this
+    private final Map<String, Fingerprint> fingerprints = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder storeFailures = new LongAdder();
+
+    public ExcelColumnCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    // The cache in the directory the system property names, null when it is not set
+    public static ExcelColumnCache fromProperty() throws IOException {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null ? null : new ExcelColumnCache(Paths.get(directory), DEFAULT_MAX_BYTES);
+    }
+
+    // Same rows and errors as StreamingExcelReader.readFirstSheet, from the cache when the workbook was read before
+    // Once the rows are delivered, failing to store or evict cached files does not fail the read.
+    public int readFirstSheet(Path workbook, ColumnProjection projection, RowHandler handler) throws IOException {
+        Path cached = directory.resolve(hash(workbook) + "-" + key(projection) + SUFFIX);
+        if (Files.exists(cached)) {
+            try {
+                Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // evicted meanwhile, the mapping below fails and the workbook is read again
+            }
+            try {
+                // replay validates the file before the first row, so a failure here delivered nothing
+                int rows = ColumnarSheet.replay(cached, handler);
+                hits.increment();
+                return rows;
+            } catch (IOException e) {
+                delete(cached);
+            }
+        }
+        misses.increment();
+        // the recorder spills the columns to the directory as rows go by, the heap stays as flat as without the cache
+        try (ColumnarSheet.Recorder recorder = new ColumnarSheet.Recorder(handler, directory)) {
+            int rows = StreamingExcelReader.readFirstSheet(workbook.toFile(), projection, recorder);
+            try {
+                store(recorder, cached);
+                evict(cached);
+            } catch (IOException e) {
+                // the caller has every row already, the workbook is only read again next time
+                storeFailures.increment();
+            }
+            return rows;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Reads whose result could not be written to the directory
+    public long getStoreFailureCount() {
+        return storeFailures.sum();
+    }
+
+    // Bytes of the cached sheets in the directory
+    public long getSizeInBytes() throws IOException {
+        long size = 0;
+        for (Path file : cachedFiles()) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ExcelColumnCache [directory=" + directory + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", storeFailures=" + getStoreFailureCount() + "]";
+    }
+
+    // Content hash of the workbook, recomputed only when its size or modification time changed
+    private String hash(Path workbook) throws IOException {
+        String path = workbook.toAbsolutePath().normalize().toString();
+        long size = Files.size(workbook);
+        long modified = Files.getLastModifiedTime(workbook).toMillis();
+        synchronized (this) {
+            Fingerprint fingerprint = fingerprints.get(path);
+            if (fingerprint != null && fingerprint.size == size && fingerprint.modified == modified) {
+                return fingerprint.hash;
+            }
+        }
+        String hash;
+        try (InputStream in = Files.newInputStream(workbook)) {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            hash = hex(digest.digest());
+        }
+        synchronized (this) {
+            fingerprints.put(path, new Fingerprint(size, modified, hash));
+            saveIndex();
+        }
+        return hash;
+    }
+
+    private static String key(ColumnProjection projection) {
+        return hex(sha256().digest(projection.toString().getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+    }
+
+    // Deletes the least recently read files until the directory fits, never the one just written
+    // Files that cannot be deleted, such as ones still mapped by a replay on Windows, are skipped.
+    private synchronized void evict(Path keep) throws IOException {
+        List<Path> files = cachedFiles();
+        long size = 0;
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> lastRead = new HashMap<>();
+        for (Path file : files) {
+            try {
+                sizes.put(file, Files.size(file));
+                lastRead.put(file, Files.getLastModifiedTime(file).toMillis());
+                size += sizes.get(file);
+            } catch (IOException e) {
+                // deleted by another process
+            }
+        }
+        List<Path> oldestFirst = new ArrayList<>(sizes.keySet());
+        oldestFirst.sort(Comparator.comparing(lastRead::get));
+        for (Path file : oldestFirst) {
+            if (size <= maxBytes) {
+                return;
+            }
+            if (!file.equals(keep) && delete(file)) {
+                size -= sizes.get(file);
+                evictions.increment();
+            }
+        }
+    }
+
+    private void store(ColumnarSheet.Recorder recorder, Path cached) throws IOException {
+        Path temporary = Files.createTempFile(directory, "sheet", ".tmp");
+        try {
+            recorder.write(temporary);
+            Files.move(temporary, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            delete(temporary);
+        }
+    }
+
+    // A file that is still mapped cannot be deleted on Windows, until the mapping is collected
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList());
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path index = directory.resolve(INDEX);
+        if (!Files.exists(index)) {
+            return;
+        }
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            // size, modification time, hash and then the path, which may contain tabs itself
+            String[] fields = line.split("\t", 4);
+            if (fields.length == 4) {
+                try {
+                    fingerprints.put(fields[3], new Fingerprint(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                } catch (NumberFormatException e) {
+                    // a damaged line only costs hashing that workbook again
+                }
+            }
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        Path temporary = Files.createTempFile(directory, "index", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+                Fingerprint fingerprint = entry.getValue();
+                writer.write(fingerprint.size + "\t" + fingerprint.modified + "\t" + fingerprint.hash + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, directory.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Fingerprint {
+
+        private final long size;
+
+        private final long modified;
+
+        private final String hash;
+
+        private Fingerprint(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package pocs;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Streams every sheet of many workbooks into a CellSink, sheets in parallel on a fixed pool of threads
+// Each workbook's shared strings and styles are read once and shared by its sheets, then every sheet is
+// a task of its own, so one large workbook with several sheets keeps all threads busy as well.
+// The cells of a sheet reach the sink in row order from one thread, and the result lists the sheets in
+// workbook and sheet order, so nothing about the output depends on which sheet finished first.
+// At most maxOpenWorkbooks workbooks hold their shared strings and styles at a time: the next one is
+// opened only when every sheet of an earlier one is done, so heap follows the window, not the directory.
+public class ExcelExtractor implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    private final int threads;
+
+    private final int maxOpenWorkbooks;
+
+    // As many workbooks open as there are threads
+    public ExcelExtractor(int threads) {
+        this(threads, threads);
+    }
+
+    public ExcelExtractor(int threads, int maxOpenWorkbooks) {
+        if (maxOpenWorkbooks <= 0) {
+            throw new IllegalArgumentException("maxOpenWorkbooks must be positive: " + maxOpenWorkbooks);
+        }
+        this.threads = threads;
+        this.maxOpenWorkbooks = maxOpenWorkbooks;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "excel-extractor-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Every .xlsx file of the directory, in file name order
+    public ExtractionResult extract(Path directory, CellSink sink) throws IOException {
+        List<File> workbooks;
+        try (Stream<Path> files = Files.list(directory)) {
+            workbooks = files.filter(file -> file.getFileName().toString().endsWith(".xlsx")
+                            && !file.getFileName().toString().startsWith("~$"))
+                    .sorted().map(Path::toFile).collect(Collectors.toList());
+        }
+        return extract(workbooks, sink);
+    }
+
+    // Fails with the first workbook that cannot be read, once every other sheet is done
+    public ExtractionResult extract(List<File> workbooks, CellSink sink) throws IOException {
+        long start = System.nanoTime();
+        Semaphore openWorkbooks = new Semaphore(maxOpenWorkbooks);
+        List<CompletableFuture<Map<ExcelSheet, Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < workbooks.size(); i++) {
+            File file = workbooks.get(i);
+            int workbookIndex = i;
+            try {
+                openWorkbooks.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted before opening " + file);
+            }
+            results.add(CompletableFuture.supplyAsync(() -> open(file, workbookIndex), executor)
+                    .thenCompose(workbook -> readSheets(workbook, sink))
+                    .whenComplete((rows, failure) -> openWorkbooks.release()));
+        }
+        Map<ExcelSheet, Integer> rows = new LinkedHashMap<>();
+        IOException failure = null;
+        for (CompletableFuture<Map<ExcelSheet, Integer>> result : results) {
+            try {
+                rows.putAll(result.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof UncheckedIOException ? ((UncheckedIOException) e.getCause()).getCause()
+                            : new IOException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new ExtractionResult(rows, System.nanoTime() - start, threads);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private CompletableFuture<Map<ExcelSheet, Integer>> readSheets(Workbook workbook, CellSink sink) {
+        List<CompletableFuture<Integer>> sheets = new ArrayList<>();
+        for (ExcelSheet sheet : workbook.sheets) {
+            sheets.add(CompletableFuture.supplyAsync(() -> readSheet(workbook, sheet, sink), executor));
+        }
+        return CompletableFuture.allOf(sheets.toArray(new CompletableFuture[0])).thenApply(done -> {
+            Map<ExcelSheet, Integer> rows = new LinkedHashMap<>();
+            for (int i = 0; i < sheets.size(); i++) {
+                rows.put(workbook.sheets.get(i), sheets.get(i).join());
+            }
+            return rows;
+        });
+    }
+
+    private static int readSheet(Workbook workbook, ExcelSheet sheet, CellSink sink) {
+        sink.startSheet(sheet);
+        int rows;
+        try {
+            rows = StreamingExcelReader.readSheet(sheet.getWorkbook(), sheet.getSheetIndex(), workbook.styles, workbook.strings,
+                    (row, column, value) -> sink.cell(sheet, row, column, value));
+        } catch (IOException e) {
+            sink.abortSheet(sheet, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            sink.abortSheet(sheet, e);
+            throw e;
+        }
+        sink.endSheet(sheet, rows);
+        return rows;
+    }
+
+    private static Workbook open(File file, int workbookIndex) {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            List<ExcelSheet> sheets = new ArrayList<>();
+            List<String> names = StreamingExcelReader.sheetNames(reader);
+            for (int i = 0; i < names.size(); i++) {
+                sheets.add(new ExcelSheet(file, workbookIndex, i, names.get(i)));
+            }
+            return new Workbook(sheets, reader.getStylesTable(), new ReadOnlySharedStringsTable(pkg));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (OpenXML4JException | SAXException e) {
+            throw new UncheckedIOException(new IOException("Cannot open " + file, e));
+        }
+    }
+
+    // What the sheets of one workbook share
+    private static final class Workbook {
+
+        private final List<ExcelSheet> sheets;
+
+        private final StylesTable styles;
+
+        private final ReadOnlySharedStringsTable strings;
+
+        private Workbook(List<ExcelSheet> sheets, StylesTable styles, ReadOnlySharedStringsTable strings) {
+            this.sheets = sheets;
+            this.styles = styles;
+            this.strings = strings;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package pocs;
+
+import java.io.File;
+import java.util.Comparator;
+
+// One sheet of one workbook in an extraction, ordered by workbook and then sheet position
+public final class ExcelSheet implements Comparable<ExcelSheet> {
+
+    private static final Comparator<ExcelSheet> ORDER = Comparator.comparingInt(ExcelSheet::getWorkbookIndex)
+            .thenComparingInt(ExcelSheet::getSheetIndex);
+
+    private final File workbook;
+
+    private final int workbookIndex;
+
+    private final int sheetIndex;
+
+    private final String name;
+
+    ExcelSheet(File workbook, int workbookIndex, int sheetIndex, String name) {
+        this.workbook = workbook;
+        this.workbookIndex = workbookIndex;
+        this.sheetIndex = sheetIndex;
+        this.name = name;
+    }
+
+    public File getWorkbook() {
+        return workbook;
+    }
+
+    // Position of the workbook in the list given to the extractor
+    public int getWorkbookIndex() {
+        return workbookIndex;
+    }
+
+    // Position of the sheet in its workbook, 0 for the first
+    public int getSheetIndex() {
+        return sheetIndex;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int compareTo(ExcelSheet other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ExcelSheet)) {
+            return false;
+        }
+        ExcelSheet other = (ExcelSheet) o;
+        return workbookIndex == other.workbookIndex && sheetIndex == other.sheetIndex && workbook.equals(other.workbook);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * workbook.hashCode() + workbookIndex) + sheetIndex;
+    }
+
+    @Override
+    public String toString() {
+        return workbook.getName() + "!" + name;
+    }
+
+}
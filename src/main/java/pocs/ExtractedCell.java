@@ -0,0 +1,42 @@
+package pocs;
+
+// A cell handed to a queue by CellSink.toQueue
+public final class ExtractedCell {
+
+    private final ExcelSheet sheet;
+
+    private final int row;
+
+    private final int column;
+
+    private final String value;
+
+    ExtractedCell(ExcelSheet sheet, int row, int column, String value) {
+        this.sheet = sheet;
+        this.row = row;
+        this.column = column;
+        this.value = value;
+    }
+
+    public ExcelSheet getSheet() {
+        return sheet;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return sheet + "[" + row + "," + column + "]=" + value;
+    }
+
+}
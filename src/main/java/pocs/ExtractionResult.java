@@ -0,0 +1,52 @@
+package pocs;
+
+import java.util.Collections;
+import java.util.Map;
+
+// Rows read from each sheet of an ExcelExtractor run, in workbook and sheet order
+public final class ExtractionResult {
+
+    private final Map<ExcelSheet, Integer> rows;
+
+    private final long elapsedNanos;
+
+    private final int threads;
+
+    ExtractionResult(Map<ExcelSheet, Integer> rows, long elapsedNanos, int threads) {
+        this.rows = Collections.unmodifiableMap(rows);
+        this.elapsedNanos = elapsedNanos;
+        this.threads = threads;
+    }
+
+    public Map<ExcelSheet, Integer> getRows() {
+        return rows;
+    }
+
+    public long getTotalRows() {
+        long total = 0;
+        for (int count : rows.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return getTotalRows() / (elapsedNanos / 1e9);
+    }
+
+    // Threads beyond the number of processors do not add cores
+    public double getRowsPerSecondPerCore() {
+        return getRowsPerSecond() / Math.min(threads, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractionResult [sheets=" + rows.size() + ", rows=" + getTotalRows() + ", threads=" + threads
+                + ", rows/s=" + Math.round(getRowsPerSecond()) + ", rows/s per core=" + Math.round(getRowsPerSecondPerCore()) + "]";
+    }
+
+}
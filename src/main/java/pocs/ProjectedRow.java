@@ -0,0 +1,159 @@
+package pocs;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+// The projected cells of one row, decoded while parsing - numbers, dates and booleans never become Strings
+// Slot i is the i-th column of the ColumnProjection. Reading a slot as the wrong kind throws, which the
+// reader reports as a RowError for the row.
+public final class ProjectedRow {
+
+    private final int[] columns;
+
+    private final boolean date1904;
+
+    private final CellKind[] kinds;
+
+    private final double[] numbers;
+
+    private final String[] strings;
+
+    private int rowNumber;
+
+    ProjectedRow(int[] columns, boolean date1904) {
+        this.columns = columns;
+        this.date1904 = date1904;
+        this.kinds = new CellKind[columns.length];
+        this.numbers = new double[columns.length];
+        this.strings = new String[columns.length];
+        reset(0);
+    }
+
+    void reset(int rowNumber) {
+        this.rowNumber = rowNumber;
+        Arrays.fill(kinds, CellKind.BLANK);
+        Arrays.fill(strings, null);
+    }
+
+    void setNumber(int slot, double value, boolean date) {
+        kinds[slot] = date ? CellKind.DATE : CellKind.NUMBER;
+        numbers[slot] = value;
+    }
+
+    void setBoolean(int slot, boolean value) {
+        kinds[slot] = CellKind.BOOLEAN;
+        numbers[slot] = value ? 1 : 0;
+    }
+
+    void setString(int slot, String value) {
+        kinds[slot] = CellKind.STRING;
+        strings[slot] = value;
+    }
+
+    void setError(int slot, String value) {
+        kinds[slot] = CellKind.ERROR;
+        strings[slot] = value;
+    }
+
+    // 0 based, as in the sheet
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    // Sheet column of the slot, 0 based
+    public int getColumn(int slot) {
+        return columns[slot];
+    }
+
+    public CellKind getKind(int slot) {
+        return kinds[slot];
+    }
+
+    public boolean isBlank(int slot) {
+        return kinds[slot] == CellKind.BLANK;
+    }
+
+    // Dates read as their Excel serial number
+    public double getDouble(int slot) {
+        if (kinds[slot] != CellKind.NUMBER && kinds[slot] != CellKind.DATE) {
+            throw wrongKind(slot, "a number");
+        }
+        return numbers[slot];
+    }
+
+    public long getLong(int slot) {
+        double value = getDouble(slot);
+        if (value != Math.rint(value) || Math.abs(value) > Long.MAX_VALUE) {
+            throw new IllegalStateException("Column " + columns[slot] + " of row " + rowNumber + " is not a whole number: " + value);
+        }
+        return (long) value;
+    }
+
+    public boolean getBoolean(int slot) {
+        if (kinds[slot] != CellKind.BOOLEAN) {
+            throw wrongKind(slot, "a boolean");
+        }
+        return numbers[slot] != 0;
+    }
+
+    // Date cells, and number cells holding a date without a date format
+    public LocalDateTime getDateTime(int slot) {
+        if (kinds[slot] != CellKind.DATE && kinds[slot] != CellKind.NUMBER) {
+            throw wrongKind(slot, "a date");
+        }
+        return DateUtil.getLocalDateTime(numbers[slot], date1904);
+    }
+
+    // Text cells, null for a blank one
+    public String getString(int slot) {
+        if (kinds[slot] == CellKind.BLANK) {
+            return null;
+        }
+        if (kinds[slot] != CellKind.STRING) {
+            throw wrongKind(slot, "text");
+        }
+        return strings[slot];
+    }
+
+    // Any kind as text, for printing - numbers in Java notation, not Excel's display format
+    public String getText(int slot) {
+        switch (kinds[slot]) {
+            case BLANK:
+                return "";
+            case NUMBER:
+                return numbers[slot] == Math.rint(numbers[slot]) && Math.abs(numbers[slot]) < 1e15
+                        ? Long.toString((long) numbers[slot]) : Double.toString(numbers[slot]);
+            case DATE:
+                return getDateTime(slot).toString();
+            case BOOLEAN:
+                return Boolean.toString(numbers[slot] != 0);
+            default:
+                return strings[slot];
+        }
+    }
+
+    // Stored value of a NUMBER, DATE or BOOLEAN slot, whatever the kind
+    double getNumber(int slot) {
+        return numbers[slot];
+    }
+
+    // Stored text of a STRING or ERROR slot
+    String getRawString(int slot) {
+        return strings[slot];
+    }
+
+    boolean isDate1904() {
+        return date1904;
+    }
+
+    private IllegalStateException wrongKind(int slot, String expected) {
+        return new IllegalStateException("Column " + columns[slot] + " of row " + rowNumber + " is " + kinds[slot] + ", not " + expected);
+    }
+
+}
@@ -0,0 +1,328 @@
+package pocs;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// SAX handler of a sheet's XML that decodes only the projected cells, straight into a ProjectedRow
+// Cells outside the projection are recognised by their reference and their text is never collected.
+// Numbers are parsed from the characters SAX hands over, only unusual ones go through Double.parseDouble.
+final class ProjectingSheetHandler extends DefaultHandler {
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ColumnProjection projection;
+
+    private final StylesTable styles;
+
+    private final ReadOnlySharedStringsTable strings;
+
+    private final boolean date1904;
+
+    private final RowHandler handler;
+
+    // slot of each sheet column, -1 for columns that are skipped
+    private int[] slots;
+
+    private ProjectedRow row;
+
+    // names mode, the first row holds the headers and is matched instead of handed on
+    private boolean inHeader;
+
+    // normalized header text to its column, filled while inHeader
+    private Map<String, Integer> headers;
+
+    private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+    private int rowNumber = -1;
+
+    private int column;
+
+    private int slot;
+
+    private String type;
+
+    private int style;
+
+    private boolean collecting;
+
+    private char[] text = new char[64];
+
+    private int length;
+
+    private int rows;
+
+    private int errors;
+
+    ProjectingSheetHandler(ColumnProjection projection, StylesTable styles, ReadOnlySharedStringsTable strings, boolean date1904,
+                           RowHandler handler) {
+        this.projection = projection;
+        this.styles = styles;
+        this.strings = strings;
+        this.date1904 = date1904;
+        this.handler = handler;
+        if (projection.hasHeader()) {
+            inHeader = true;
+            slots = new int[0];
+        } else {
+            useColumns(projection.getIndexes());
+        }
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getErrors() {
+        return errors;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        switch (localName) {
+            case "row":
+                String r = attributes.getValue("r");
+                rowNumber = r == null ? rowNumber + 1 : Integer.parseInt(r) - 1;
+                column = -1;
+                if (row != null) {
+                    row.reset(rowNumber);
+                }
+                break;
+            case "c":
+                String reference = attributes.getValue("r");
+                column = reference == null ? column + 1 : StreamingExcelReader.columnIndex(reference);
+                slot = inHeader ? column : column < slots.length ? slots[column] : -1;
+                type = attributes.getValue("t");
+                String s = attributes.getValue("s");
+                style = s == null ? 0 : Integer.parseInt(s);
+                length = 0;
+                break;
+            case "v":
+            case "t":
+                // t is the text of an inline string, possibly split in runs
+                collecting = slot >= 0;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int count) {
+        if (!collecting) {
+            return;
+        }
+        if (length + count > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, length + count));
+        }
+        System.arraycopy(ch, start, text, length, count);
+        length += count;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        switch (localName) {
+            case "v":
+            case "t":
+                collecting = false;
+                break;
+            case "c":
+                if (slot >= 0 && length > 0) {
+                    if (inHeader) {
+                        header(column, decodeText());
+                    } else {
+                        decode();
+                    }
+                }
+                break;
+            case "row":
+                endRow();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        if (inHeader) {
+            throw new SAXException("Sheet has no header row for " + projection);
+        }
+    }
+
+    private void endRow() throws SAXException {
+        if (inHeader) {
+            String[] names = projection.getNames();
+            int[] columns = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                if (headers == null || !headers.containsKey(normalize(names[i]))) {
+                    throw new SAXException("No column named '" + names[i] + "' in header row " + rowNumber);
+                }
+                columns[i] = headers.get(normalize(names[i]));
+            }
+            inHeader = false;
+            useColumns(columns);
+            return;
+        }
+        rows++;
+        try {
+            handler.row(row);
+        } catch (RuntimeException e) {
+            error(-1, e.getMessage(), e);
+        }
+    }
+
+    private void header(int column, String name) {
+        if (headers == null) {
+            headers = new HashMap<>();
+        }
+        headers.putIfAbsent(normalize(name), column);
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void useColumns(int[] columns) {
+        int max = 0;
+        for (int column : columns) {
+            max = Math.max(max, column + 1);
+        }
+        slots = new int[max];
+        Arrays.fill(slots, -1);
+        // a column projected twice fills the first slot only
+        for (int i = columns.length - 1; i >= 0; i--) {
+            slots[columns[i]] = i;
+        }
+        row = new ProjectedRow(columns, date1904);
+    }
+
+    private void decode() {
+        if (type == null || type.equals("n")) {
+            try {
+                row.setNumber(slot, parseNumber(text, length), isDateStyle(style));
+            } catch (NumberFormatException e) {
+                row.setError(slot, new String(text, 0, length));
+                error(column, "Not a number: " + new String(text, 0, length), null);
+            }
+            return;
+        }
+        switch (type) {
+            case "s":
+            case "inlineStr":
+            case "str":
+                row.setString(slot, decodeText());
+                break;
+            case "b":
+                row.setBoolean(slot, text[0] == '1');
+                break;
+            case "e":
+                row.setError(slot, new String(text, 0, length));
+                error(column, "Cell error " + new String(text, 0, length), null);
+                break;
+            default:
+                row.setError(slot, new String(text, 0, length));
+                error(column, "Unknown cell type " + type, null);
+                break;
+        }
+    }
+
+    // Text of a string cell, or the raw value of any other cell in the header row
+    private String decodeText() {
+        if ("s".equals(type)) {
+            int index = 0;
+            for (int i = 0; i < length; i++) {
+                index = index * 10 + (text[i] - '0');
+            }
+            return strings.getItemAt(index).getString();
+        }
+        return new String(text, 0, length);
+    }
+
+    private void error(int column, String message, Exception cause) {
+        errors++;
+        handler.error(new RowError(rowNumber, column, message, cause));
+    }
+
+    private boolean isDateStyle(int style) {
+        if (styles == null || style == 0) {
+            return false;
+        }
+        return dateStyles.computeIfAbsent(style, index -> {
+            XSSFCellStyle cellStyle = styles.getStyleAt(index);
+            return cellStyle != null && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+        });
+    }
+
+    // Exact for up to 15 significant digits and exponents within +-22, the rest falls back to the JDK
+    static double parseNumber(char[] text, int length) {
+        int i = 0;
+        boolean negative = length > 0 && text[0] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        int significant = 0;
+        for (; i < length && text[i] >= '0' && text[i] <= '9'; i++, digits++) {
+            mantissa = mantissa * 10 + (text[i] - '0');
+            if (mantissa != 0) {
+                significant++;
+            }
+        }
+        if (i < length && text[i] == '.') {
+            for (i++; i < length && text[i] >= '0' && text[i] <= '9'; i++, digits++) {
+                mantissa = mantissa * 10 + (text[i] - '0');
+                exponent--;
+                if (mantissa != 0) {
+                    significant++;
+                }
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException(new String(text, 0, length));
+        }
+        if (i < length && (text[i] == 'E' || text[i] == 'e')) {
+            i++;
+            boolean negativeExponent = i < length && text[i] == '-';
+            if (i < length && (text[i] == '-' || text[i] == '+')) {
+                i++;
+            }
+            int value = 0;
+            int exponentDigits = 0;
+            for (; i < length && text[i] >= '0' && text[i] <= '9' && exponentDigits < 6; i++, exponentDigits++) {
+                value = value * 10 + (text[i] - '0');
+            }
+            if (exponentDigits == 0) {
+                throw new NumberFormatException(new String(text, 0, length));
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != length) {
+            throw new NumberFormatException(new String(text, 0, length));
+        }
+        if (significant > 15 || exponent < -22 || exponent > 22) {
+            return Double.parseDouble(new String(text, 0, length));
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+}
@@ -9,19 +9,66 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ReadWriteColumnFromExcel {
 
     // In run configuration , program arguments give path of excel, it will be passed in main method args
     // Example Path : C:\Users\User\Desktop\Numbers.xlsx
-    // Format column in excel to be text other wise if numbers alone are given exception will thrown
+    // Rows are streamed by default, a second argument "dom" loads the whole workbook instead
+    // Any other second argument reads only that column, by header name or 0 based index, reporting bad rows
+    // -Dexcel.cache.dir=<dir> keeps that column in a cache, so the next read of the same file skips POI
+    // A directory path extracts every sheet of every workbook in it with ExcelExtractor
+    // With "dom" format column in excel to be text other wise if numbers alone are given exception will thrown
     public static void main(String[] args) {
-        Workbook workbook;
         List<String> asns = new ArrayList<>();
         try {
             File file = new File(args[0]);
-            FileInputStream fileInputStream = new FileInputStream(file);
-            workbook = WorkbookFactory.create(fileInputStream);
+            if (file.isDirectory()) {
+                try (ExcelExtractor extractor = new ExcelExtractor(Runtime.getRuntime().availableProcessors())) {
+                    CollectingCellSink sink = new CollectingCellSink();
+                    System.out.println(extractor.extract(file.toPath(), sink));
+                    asns.addAll(sink.getAllValues());
+                }
+                System.out.println(asns);
+                return;
+            }
+            Consumer<String> cells = value -> {
+                System.out.println(value);
+                asns.add(value);
+            };
+            int count;
+            if (args.length < 2) {
+                count = readColumnStreaming(file, cells);
+            } else if (args[1].equals("dom")) {
+                count = readColumn(file, cells);
+            } else {
+                count = readColumn(file, args[1].matches("\\d+") ? ColumnProjection.columns(Integer.parseInt(args[1]))
+                        : ColumnProjection.named(args[1]), cells, ExcelColumnCache.fromProperty());
+            }
+            System.out.println("Total msgs " + count);
+
+        } catch (EncryptedDocumentException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // a cell that is not text in the dom mode ends up here
+            System.err.println("Cannot read " + args[0] + ": " + e);
+        }
+
+        System.out.println(asns);
+
+    }
+
+    // Every cell of the first sheet through the full POI DOM, returns the number of rows
+    // Heap grows with the workbook - several gigabytes for a few hundred thousand rows
+    public static int readColumn(File file, Consumer<String> cells) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(file);
+             Workbook workbook = WorkbookFactory.create(fileInputStream)) {
             Iterator<Sheet> sheetIterator = workbook.sheetIterator();
             Sheet sheet = sheetIterator.next();
             Iterator<Row> rowIterator = sheet.rowIterator();
@@ -31,24 +78,47 @@ public class ReadWriteColumnFromExcel {
                 Iterator<Cell> cellIterator = row.cellIterator();
                 while (cellIterator.hasNext()) {
                     Cell cell = cellIterator.next();
-                    System.out.println(cell.getStringCellValue());
-                    asns.add(cell.getStringCellValue());
+                    cells.accept(cell.getStringCellValue());
                 }
                 count++;
             }
-            System.out.println("Total msgs " + count);
-            fileInputStream.close();
-
-        } catch (EncryptedDocumentException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.out.println("Ignore");
+            return count;
         }
+    }
 
-        System.out.println(asns);
+    // One column as text whatever the cell types, rows that cannot be read are printed to System.err
+    // Returns the number of data rows.
+    public static int readColumn(File file, ColumnProjection projection, Consumer<String> cells) throws IOException {
+        return readColumn(file, projection, cells, null);
+    }
+
+    // Through the cache, unless it is null
+    public static int readColumn(File file, ColumnProjection projection, Consumer<String> cells, ExcelColumnCache cache) throws IOException {
+        RowHandler handler = new RowHandler() {
+            @Override
+            public void row(ProjectedRow row) {
+                if (!row.isBlank(0)) {
+                    cells.accept(row.getText(0));
+                }
+            }
+
+            @Override
+            public void error(RowError error) {
+                System.err.println(error);
+            }
+        };
+        return cache == null ? StreamingExcelReader.readFirstSheet(file, projection, handler)
+                : cache.readFirstSheet(file.toPath(), projection, handler);
+    }
+
+    // Same cells as readColumn, parsed as they are read so heap stays flat whatever the file size
+    public static int readColumnStreaming(File file, Consumer<String> cells) throws IOException {
+        return StreamingExcelReader.readFirstSheet(file, (row, column, value) -> cells.accept(value));
+    }
 
+    // Writes the values as one column under a header with the streaming writer, returns how many were written
+    public static long writeColumn(File file, String header, Stream<String> values) throws IOException {
+        return new StreamingExcelWriter().write(file, "Sheet1", List.of(header), values.map(value -> new Object[]{value}));
     }
 
 }
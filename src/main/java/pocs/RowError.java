@@ -0,0 +1,45 @@
+package pocs;
+
+// A problem with one row of a projected read, reported to the RowHandler while reading goes on
+public final class RowError {
+
+    private final int row;
+
+    private final int column;
+
+    private final String message;
+
+    private final Exception cause;
+
+    RowError(int row, int column, String message, Exception cause) {
+        this.row = row;
+        this.column = column;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    // 0 based, as in the sheet
+    public int getRow() {
+        return row;
+    }
+
+    // 0 based sheet column, -1 when the whole row failed
+    public int getColumn() {
+        return column;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // The exception the RowHandler threw for the row, null for a bad cell
+    public Exception getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "RowError [row=" + row + (column >= 0 ? ", column=" + column : "") + ", " + message + "]";
+    }
+
+}
@@ -0,0 +1,12 @@
+package pocs;
+
+// Receives the rows of a projected read
+// An exception thrown from row is reported to error for that row and the next row is read.
+public interface RowHandler {
+
+    // The row is reused for the next one, copy out what has to be kept
+    void row(ProjectedRow row);
+
+    void error(RowError error);
+
+}
@@ -0,0 +1,192 @@
+package pocs;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads an .xlsx sheet row by row with POI's SAX event API instead of building the workbook in memory
+// Cells are handed over while the sheet XML is parsed, so heap does not grow with the number of rows.
+// What stays in memory is the shared strings table - one entry per distinct text value - and the styles.
+// Values are the text Excel would display, so numeric cells are read too instead of throwing.
+// With a ColumnProjection only the chosen columns are decoded, by type, see ProjectingSheetHandler.
+public class StreamingExcelReader {
+
+    // Gets every non-empty cell in row order, row and column are 0 based
+    @FunctionalInterface
+    public interface CellHandler {
+        void cell(int row, int column, String value);
+    }
+
+    // Streams the first sheet and returns the number of rows it had
+    public static int readFirstSheet(File file, CellHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+            try (InputStream sheet = sheets.next()) {
+                return readSheet(sheet, styles, strings, handler);
+            }
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException("Cannot read " + file, e);
+        }
+    }
+
+    // Streams only the projected columns of the first sheet, decoded by type, and returns the number of
+    // data rows. Bad cells and rows the handler fails on are reported to it and reading continues.
+    public static int readFirstSheet(File file, ColumnProjection projection, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = isDate1904(reader);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+            ProjectingSheetHandler sheetHandler = new ProjectingSheetHandler(projection, styles, strings, date1904, handler);
+            try (InputStream sheet = sheets.next()) {
+                newParser(sheetHandler).parse(new InputSource(sheet));
+            }
+            return sheetHandler.getRows();
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException("Cannot read " + file, e);
+        }
+    }
+
+    // Whether serial dates count from 1904 instead of 1900, set in the workbook part
+    static boolean isDate1904(XSSFReader reader) throws IOException, OpenXML4JException, SAXException {
+        boolean[] date1904 = new boolean[1];
+        try (InputStream workbook = reader.getWorkbookData()) {
+            newParser(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if (localName.equals("workbookPr")) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equals(value);
+                    }
+                }
+            }).parse(new InputSource(workbook));
+        }
+        return date1904[0];
+    }
+
+    private static XMLReader newParser(ContentHandler handler) throws IOException {
+        try {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(handler);
+            return parser;
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("No SAX parser available", e);
+        }
+    }
+
+    // Names of the sheets in workbook order
+    static List<String> sheetNames(XSSFReader reader) throws IOException {
+        List<String> names = new ArrayList<>();
+        try {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                names.add(sheets.getSheetName());
+            }
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot list sheets", e);
+        }
+        return names;
+    }
+
+    // Streams one sheet with tables already read from the workbook, which are only read and can be shared
+    // The workbook is opened again, so different sheets of it can be read on different threads.
+    static int readSheet(File file, int sheetIndex, StylesTable styles, ReadOnlySharedStringsTable strings, CellHandler handler)
+            throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            for (int i = 0; i < sheetIndex; i++) {
+                sheets.next().close();
+            }
+            try (InputStream sheet = sheets.next()) {
+                return readSheet(sheet, styles, strings, handler);
+            }
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException("Cannot read sheet " + sheetIndex + " of " + file, e);
+        }
+    }
+
+    static int readSheet(InputStream sheet, StylesTable styles, ReadOnlySharedStringsTable strings, CellHandler handler)
+            throws IOException, SAXException {
+        RowCounter rows = new RowCounter(handler);
+        newParser(new XSSFSheetXMLHandler(styles, null, strings, rows, new DataFormatter(), false)).parse(new InputSource(sheet));
+        return rows.count;
+    }
+
+    // Column of a reference like "AB12", 0 for "A"
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static class RowCounter implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final CellHandler handler;
+
+        private int row;
+
+        private int column;
+
+        private int count;
+
+        private RowCounter(CellHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row = rowNum;
+            column = -1;
+            count++;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // the reference is optional in the file, without it the cell follows the previous one
+            column = cellReference == null ? column + 1 : columnIndex(cellReference);
+            handler.cell(row, column, formattedValue);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package pocs;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Writes rows to an .xlsx with POI's SXSSF workbook, which keeps only a window of rows in memory
+// Rows older than the window are flushed to a temporary sheet file, gzip compressed by default, so heap
+// stays flat however many rows are written. Strings are written inline rather than to a shared strings
+// table, which would grow with every distinct value.
+// Cell styles are created once per number format and reused - a style per cell would run into Excel's
+// limit of 64000 styles and keep every one of them on the heap.
+// A sheet holds at most 1048576 rows, later rows go to a new sheet with the same header.
+public class StreamingExcelWriter {
+
+    public static final int DEFAULT_ROW_WINDOW = 100;
+
+    private static final String DATE_FORMAT = "yyyy-mm-dd";
+
+    private static final String DATE_TIME_FORMAT = "yyyy-mm-dd hh:mm:ss";
+
+    private final int rowWindow;
+
+    private final boolean compressTempFiles;
+
+    private final Map<Integer, String> columnFormats = new HashMap<>();
+
+    public StreamingExcelWriter() {
+        this(DEFAULT_ROW_WINDOW, true);
+    }
+
+    public StreamingExcelWriter(int rowWindow, boolean compressTempFiles) {
+        if (rowWindow <= 0) {
+            throw new IllegalArgumentException("rowWindow must be positive: " + rowWindow);
+        }
+        this.rowWindow = rowWindow;
+        this.compressTempFiles = compressTempFiles;
+    }
+
+    // Excel number format for a 0 based column, "#,##0.00" for example, numbers are written unformatted otherwise
+    public StreamingExcelWriter setColumnFormat(int column, String format) {
+        columnFormats.put(column, format);
+        return this;
+    }
+
+    public long write(File file, String sheetName, List<String> header, Stream<Object[]> rows) throws IOException {
+        try (Stream<Object[]> closing = rows) {
+            return write(file, sheetName, header, closing.iterator());
+        }
+    }
+
+    // Values may be String, Number, Boolean, LocalDate, LocalDateTime or null for an empty cell
+    // Returns the number of rows written, the header not counted. An empty header writes none.
+    public long write(File file, String sheetName, List<String> header, Iterator<Object[]> rows) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(null, rowWindow, compressTempFiles, false);
+        try (OutputStream out = new FileOutputStream(file)) {
+            Styles styles = new Styles(workbook);
+            int maxRows = SpreadsheetVersion.EXCEL2007.getMaxRows();
+            int sheets = 0;
+            Sheet sheet = null;
+            int rowNumber = 0;
+            long written = 0;
+            while (rows.hasNext()) {
+                if (sheet == null || rowNumber == maxRows) {
+                    sheets++;
+                    sheet = workbook.createSheet(sheets == 1 ? sheetName : sheetName + " (" + sheets + ")");
+                    rowNumber = writeHeader(sheet, header);
+                }
+                Object[] values = rows.next();
+                Row row = sheet.createRow(rowNumber++);
+                for (int column = 0; column < values.length; column++) {
+                    if (values[column] != null) {
+                        setValue(row.createCell(column), column, values[column], styles);
+                    }
+                }
+                written++;
+            }
+            if (sheet == null) {
+                writeHeader(workbook.createSheet(sheetName), header);
+            }
+            workbook.write(out);
+            return written;
+        } finally {
+            // deletes the temporary sheet files
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static int writeHeader(Sheet sheet, List<String> header) {
+        if (header == null || header.isEmpty()) {
+            return 0;
+        }
+        Row row = sheet.createRow(0);
+        for (int column = 0; column < header.size(); column++) {
+            row.createCell(column).setCellValue(header.get(column));
+        }
+        return 1;
+    }
+
+    private void setValue(Cell cell, int column, Object value, Styles styles) {
+        if (value instanceof String) {
+            cell.setCellValue((String) value);
+        } else if (value instanceof Number) {
+            cell.setCellValue(((Number) value).doubleValue());
+            String format = columnFormats.get(column);
+            if (format != null) {
+                cell.setCellStyle(styles.get(format));
+            }
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else if (value instanceof LocalDateTime) {
+            cell.setCellValue((LocalDateTime) value);
+            cell.setCellStyle(styles.get(columnFormats.getOrDefault(column, DATE_TIME_FORMAT)));
+        } else if (value instanceof LocalDate) {
+            cell.setCellValue((LocalDate) value);
+            cell.setCellStyle(styles.get(columnFormats.getOrDefault(column, DATE_FORMAT)));
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " to column " + column);
+        }
+    }
+
+    // One style per number format for the whole workbook
+    private static final class Styles {
+
+        private final SXSSFWorkbook workbook;
+
+        private final DataFormat dataFormat;
+
+        private final Map<String, CellStyle> styles = new HashMap<>();
+
+        private Styles(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            this.dataFormat = workbook.createDataFormat();
+        }
+
+        private CellStyle get(String format) {
+            return styles.computeIfAbsent(format, key -> {
+                CellStyle style = workbook.createCellStyle();
+                style.setDataFormat(dataFormat.getFormat(key));
+                return style;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package solid_principles_examples.open_closed.after_applying;
+
+//Published by BalancePipeline when a subscriber's usage reaches a share of the free allowance
+public class BalanceEvent {
+
+    private final long subscriberId;
+
+    private final int allowancePercent;
+
+    private final long usage;
+
+    private final long freeAllowance;
+
+    private final long balanceMicros;
+
+    BalanceEvent(long subscriberId, int allowancePercent, long usage, long freeAllowance, long balanceMicros) {
+        this.subscriberId = subscriberId;
+        this.allowancePercent = allowancePercent;
+        this.usage = usage;
+        this.freeAllowance = freeAllowance;
+        this.balanceMicros = balanceMicros;
+    }
+
+    public long getSubscriberId() {
+        return subscriberId;
+    }
+
+    //The threshold that was crossed, 80 for 80% of the free allowance
+    public int getAllowancePercent() {
+        return allowancePercent;
+    }
+
+    //Usage since the subscriber was registered, including the record that crossed the threshold
+    public long getUsage() {
+        return usage;
+    }
+
+    public long getFreeAllowance() {
+        return freeAllowance;
+    }
+
+    public long getBalanceMicros() {
+        return balanceMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceEvent [subscriberId=" + subscriberId + ", allowancePercent=" + allowancePercent + ", usage=" + usage
+                + ", freeAllowance=" + freeAllowance + ", balance=" + RatingEngine.toDecimal(balanceMicros) + "]";
+    }
+
+}
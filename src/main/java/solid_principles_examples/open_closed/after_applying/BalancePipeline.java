@@ -0,0 +1,242 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//Rates every record added to the histories as it arrives and keeps a running balance per subscriber,
+//so the balance is known without waiting for calculateBill.
+//The ingest thread only puts the record on a lock-free queue, one rater thread drains it, adds the
+//amount to the subscriber's usage and rates the new total with the subscriber's plan - the same
+//RatingEngine.rate calculateBill uses, so the balance always equals a bill over the same records.
+//Crossing a share of the free allowance, 80% and 100% unless configured, publishes a BalanceEvent
+//to a non-blocking queue read with pollEvent.
+//Usage counts from register on, records already in the history are not replayed.
+//The time from hand-off to updated balance is kept in a histogram, see getLatencyPercentileNanos.
+public class BalancePipeline implements Closeable {
+
+    private static final int[] DEFAULT_THRESHOLD_PERCENTS = {80, 100};
+
+    //four buckets per power of two, so a percentile is off by at most a quarter
+    private static final int LATENCY_BUCKETS = 256;
+
+    private final int[] thresholdPercents;
+
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    private final Queue<Rated> pending = new ConcurrentLinkedQueue<>();
+
+    private final Queue<BalanceEvent> events = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+    private final UsageListener callListener = (subscriberId, begin, amount) -> offer(subscriberId, amount, false);
+
+    private final UsageListener sessionListener = (subscriberId, begin, amount) -> offer(subscriberId, amount, true);
+
+    private final Thread rater;
+
+    //set by the rater just before it parks, so producers only unpark when it is idle
+    private volatile boolean idle;
+
+    private volatile boolean running = true;
+
+    private volatile long processed;
+
+    public BalancePipeline() {
+        this(DEFAULT_THRESHOLD_PERCENTS);
+    }
+
+    public BalancePipeline(int... thresholdPercents) {
+        for (int percent : thresholdPercents) {
+            if (percent <= 0) {
+                throw new IllegalArgumentException("threshold percents must be positive: " + percent);
+            }
+        }
+        this.thresholdPercents = thresholdPercents.clone();
+        Arrays.sort(this.thresholdPercents);
+        rater = new Thread(this::rate, "balance-rater");
+        rater.setDaemon(true);
+        rater.start();
+        CallHistory.addListener(callListener);
+        InternetSessionHistory.addListener(sessionListener);
+    }
+
+    //Starts keeping the balance of the subscriber, with the plan it has now
+    //A data metered subscriber is rated on its sessions, any other subscriber on its calls.
+    public void register(Subscriber subscriber) {
+        accounts.put(subscriber.getSubscriberId(), new Account(subscriber.effectiveRatePlan(), subscriber.isDataMetered()));
+    }
+
+    public void unregister(Long subscriberId) {
+        accounts.remove(subscriberId);
+    }
+
+    //Balance in micros of the usage rated so far, 0 for a subscriber that is not registered
+    public long getBalanceMicros(Long subscriberId) {
+        Account account = accounts.get(subscriberId);
+        return account == null ? 0 : account.balanceMicros;
+    }
+
+    public long getUsage(Long subscriberId) {
+        Account account = accounts.get(subscriberId);
+        return account == null ? 0 : account.usage;
+    }
+
+    //Next threshold event, or null when there is none - never blocks
+    public BalanceEvent pollEvent() {
+        return events.poll();
+    }
+
+    //Records rated so far
+    public long getProcessedCount() {
+        return processed;
+    }
+
+    //Upper bound of the given percentile, 0.99 for p99, of the hand-off to balance update latency
+    public long getLatencyPercentileNanos(double percentile) {
+        long[] counts = new long[LATENCY_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            counts[i] = latencies.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    //Stops listening and rating, records still queued are dropped
+    @Override
+    public void close() {
+        CallHistory.removeListener(callListener);
+        InternetSessionHistory.removeListener(sessionListener);
+        running = false;
+        LockSupport.unpark(rater);
+        try {
+            rater.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //On the ingest thread, has to stay cheap
+    private void offer(long subscriberId, long amount, boolean session) {
+        Account account = accounts.get(subscriberId);
+        if (account == null || account.sessions != session) {
+            return;
+        }
+        pending.offer(new Rated(subscriberId, account, amount, System.nanoTime()));
+        if (idle) {
+            LockSupport.unpark(rater);
+        }
+    }
+
+    private void rate() {
+        long count = 0;
+        while (running) {
+            Rated rated = pending.poll();
+            if (rated == null) {
+                idle = true;
+                //a record offered before idle was set would otherwise wait for the next one
+                if (pending.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            Account account = rated.account;
+            long usage = account.usage + rated.amount;
+            long balanceMicros = RatingEngine.rate(usage, account.plan);
+            account.usage = usage;
+            account.balanceMicros = balanceMicros;
+            publishThresholds(rated.subscriberId, account, usage, balanceMicros);
+            int bucket = bucketOf(System.nanoTime() - rated.offeredNanos);
+            //the rater is the only writer, no need for an atomic increment
+            latencies.lazySet(bucket, latencies.get(bucket) + 1);
+            processed = ++count;
+        }
+    }
+
+    private void publishThresholds(long subscriberId, Account account, long usage, long balanceMicros) {
+        long allowance = account.plan.getFreeAllowance();
+        if (allowance == 0) {
+            return;
+        }
+        while (account.nextThreshold < thresholdPercents.length
+                && usage * 100.0 >= (double) allowance * thresholdPercents[account.nextThreshold]) {
+            events.offer(new BalanceEvent(subscriberId, thresholdPercents[account.nextThreshold], usage, allowance, balanceMicros));
+            account.nextThreshold++;
+        }
+    }
+
+    //Values below 4 get a bucket each, above that four buckets per power of two
+    private static int bucketOf(long nanos) {
+        if (nanos < 4) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        return (exponent - 1) * 4 + (int) ((nanos >>> (exponent - 2)) & 3);
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        return ((4L + bucket % 4 + 1) << (exponent - 2)) - 1;
+    }
+
+    //usage, balance and the next threshold are written by the rater thread only
+    private static final class Account {
+
+        private final RatePlan plan;
+
+        private final boolean sessions;
+
+        private volatile long usage;
+
+        private volatile long balanceMicros;
+
+        private int nextThreshold;
+
+        private Account(RatePlan plan, boolean sessions) {
+            this.plan = plan;
+            this.sessions = sessions;
+        }
+    }
+
+    private static final class Rated {
+
+        private final long subscriberId;
+
+        private final Account account;
+
+        private final long amount;
+
+        private final long offeredNanos;
+
+        private Rated(long subscriberId, Account account, long amount, long offeredNanos) {
+            this.subscriberId = subscriberId;
+            this.account = account;
+            this.amount = amount;
+            this.offeredNanos = offeredNanos;
+        }
+    }
+
+}
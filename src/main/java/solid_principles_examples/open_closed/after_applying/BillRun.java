@@ -0,0 +1,239 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+//Bills every subscriber in one go
+//Subscribers are cut into fixed-size partitions which a ForkJoinPool splits between its workers.
+//Bills are exact micros from calculateBillMicros, which reads the usage running totals without locking, so ingestion carries on during the run.
+//With a checkpoint file each finished partition is appended as [partition][count][CRC32][amounts in micros],
+//and a run that finds the file skips the partitions in it - a crash costs at most the partitions in flight.
+public class BillRun {
+
+    static final int DEFAULT_PARTITION_SIZE = 4096;
+
+    private static final int CHECKPOINT_MAGIC = 0x42494C32;
+
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private static final int RECORD_HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final ForkJoinPool pool;
+
+    private final int partitionSize;
+
+    public BillRun() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARTITION_SIZE);
+    }
+
+    public BillRun(ForkJoinPool pool, int partitionSize) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("partitionSize must be positive: " + partitionSize);
+        }
+        this.pool = pool;
+        this.partitionSize = partitionSize;
+    }
+
+    public BillRunResult run(List<? extends Subscriber> subscribers) {
+        try {
+            return run(subscribers, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Resumes from the checkpoint when it exists, and deletes it once every partition is billed
+    //The subscriber list has to be the same, in the same order, as in the interrupted run
+    public BillRunResult run(List<? extends Subscriber> subscribers, Path checkpoint) throws IOException {
+        //an array so partitions index in O(1) whatever the list implementation
+        Subscriber[] array = subscribers.toArray(new Subscriber[0]);
+        int size = array.length;
+        int partitions = (size + partitionSize - 1) / partitionSize;
+        long[] subscriberIds = new long[size];
+        long[] amounts = new long[size];
+        boolean[] done = new boolean[partitions];
+
+        int resumed = 0;
+        FileChannel channel = null;
+        if (checkpoint != null) {
+            resumed = readCheckpoint(checkpoint, size, amounts, done);
+            channel = openCheckpoint(checkpoint, size);
+        }
+
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new PartitionTask(array, subscriberIds, amounts, done, channel, 0, partitions));
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+        }
+        int resumedSubscribers = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            if (done[partition]) {
+                resumedSubscribers += Math.min(partitionSize, size - partition * partitionSize);
+            }
+        }
+        return new BillRunResult(subscriberIds, amounts, elapsed, resumed, resumedSubscribers);
+    }
+
+    //Splits [from, to) partitions in halves until one is left, then bills it
+    private final class PartitionTask extends RecursiveAction {
+
+        private final Subscriber[] subscribers;
+
+        private final long[] subscriberIds;
+
+        private final long[] amounts;
+
+        private final boolean[] done;
+
+        private final FileChannel checkpoint;
+
+        private final int from;
+
+        private final int to;
+
+        private PartitionTask(Subscriber[] subscribers, long[] subscriberIds, long[] amounts, boolean[] done,
+                FileChannel checkpoint, int from, int to) {
+            this.subscribers = subscribers;
+            this.subscriberIds = subscriberIds;
+            this.amounts = amounts;
+            this.done = done;
+            this.checkpoint = checkpoint;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionTask(subscribers, subscriberIds, amounts, done, checkpoint, from, middle),
+                        new PartitionTask(subscribers, subscriberIds, amounts, done, checkpoint, middle, to));
+                return;
+            }
+            int first = from * partitionSize;
+            int last = Math.min(first + partitionSize, subscriberIds.length);
+            for (int i = first; i < last; i++) {
+                Subscriber subscriber = subscribers[i];
+                subscriberIds[i] = subscriber.getSubscriberId();
+                if (!done[from]) {
+                    amounts[i] = subscriber.calculateBillMicros();
+                }
+            }
+            if (!done[from] && checkpoint != null) {
+                try {
+                    writePartition(checkpoint, from, amounts, first, last);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private FileChannel openCheckpoint(Path checkpoint, int size) throws IOException {
+        FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(CHECKPOINT_MAGIC).putInt(size).putInt(partitionSize).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        channel.position(channel.size());
+        return channel;
+    }
+
+    //Appended and forced as one write, so a crash leaves at most one torn record at the tail
+    private static void writePartition(FileChannel channel, int partition, long[] amounts, int first, int last) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate((last - first) * Long.BYTES);
+        for (int i = first; i < last; i++) {
+            payload.putLong(amounts[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.capacity());
+        record.putInt(partition).putInt(last - first).putInt((int) crc.getValue()).put(payload.array()).flip();
+        synchronized (channel) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+    }
+
+    //Loads the amounts of every complete partition, cuts off a torn tail and returns the number of partitions loaded
+    private int readCheckpoint(Path checkpoint, int size, long[] amounts, boolean[] done) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        long validLength = 0;
+        int loaded = 0;
+        try (InputStream in = Channels.newInputStream(FileChannel.open(checkpoint, StandardOpenOption.READ));
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+            try {
+                if (data.readInt() != CHECKPOINT_MAGIC || data.readInt() != size || data.readInt() != partitionSize) {
+                    throw new IOException("Checkpoint " + checkpoint + " belongs to a different bill run");
+                }
+                validLength = HEADER_BYTES;
+            } catch (EOFException e) {
+                //crashed before the header was complete, start over
+            }
+            CRC32 crc = new CRC32();
+            while (validLength > 0) {
+                int partition;
+                byte[] payload;
+                int checksum;
+                try {
+                    partition = data.readInt();
+                    int count = data.readInt();
+                    checksum = data.readInt();
+                    if (partition < 0 || partition >= done.length
+                            || count != Math.min(partitionSize, size - partition * partitionSize)) {
+                        break;
+                    }
+                    payload = new byte[count * Long.BYTES];
+                    data.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer.wrap(payload).asLongBuffer().get(amounts, partition * partitionSize, payload.length / Long.BYTES);
+                if (!done[partition]) {
+                    done[partition] = true;
+                    loaded++;
+                }
+                validLength += RECORD_HEADER_BYTES + payload.length;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+        }
+        return loaded;
+    }
+
+}
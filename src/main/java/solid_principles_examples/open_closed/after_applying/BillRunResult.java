@@ -0,0 +1,92 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.Arrays;
+
+//Outcome of a bill run, subscriber ids and bill amounts in micros as two arrays in the order subscribers were given
+public class BillRunResult {
+
+    private final long[] subscriberIds;
+
+    private final long[] amounts;
+
+    private final long elapsedNanos;
+
+    private final int resumedPartitions;
+
+    private final int resumedSubscribers;
+
+    BillRunResult(long[] subscriberIds, long[] amounts, long elapsedNanos, int resumedPartitions, int resumedSubscribers) {
+        this.subscriberIds = subscriberIds;
+        this.amounts = amounts;
+        this.elapsedNanos = elapsedNanos;
+        this.resumedPartitions = resumedPartitions;
+        this.resumedSubscribers = resumedSubscribers;
+    }
+
+    //Every subscriber, including those whose bills came from a checkpoint
+    public int size() {
+        return subscriberIds.length;
+    }
+
+    public long getSubscriberId(int index) {
+        return subscriberIds[index];
+    }
+
+    public long getAmountMicros(int index) {
+        return amounts[index];
+    }
+
+    public double getAmount(int index) {
+        return RatingEngine.toUnits(amounts[index]);
+    }
+
+    //Exact, however many subscribers were billed
+    public long getTotalAmountMicros() {
+        return RatingEngine.sum(amounts, amounts.length);
+    }
+
+    public double getTotalAmount() {
+        return RatingEngine.toUnits(getTotalAmountMicros());
+    }
+
+    //Time of this run only, partitions taken from a checkpoint cost nothing
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    //Rate of this run, over the subscribers it billed itself
+    public double getSubscribersPerSecond() {
+        return elapsedNanos == 0 ? 0 : getBilledCount() * 1e9 / elapsedNanos;
+    }
+
+    //Subscribers billed by this run
+    public int getBilledCount() {
+        return size() - resumedSubscribers;
+    }
+
+    //Partitions that were billed by an earlier, interrupted run
+    public int getResumedPartitions() {
+        return resumedPartitions;
+    }
+
+    //Subscribers of those partitions
+    public int getResumedSubscribers() {
+        return resumedSubscribers;
+    }
+
+    //Copies of the raw columns
+    public long[] toSubscriberIdArray() {
+        return Arrays.copyOf(subscriberIds, subscriberIds.length);
+    }
+
+    public long[] toAmountMicrosArray() {
+        return Arrays.copyOf(amounts, amounts.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BillRunResult [subscribers=%d, billed=%d, total=%s, subscribers/s=%.0f, resumedPartitions=%d, resumedSubscribers=%d]",
+                size(), getBilledCount(), RatingEngine.toDecimal(getTotalAmountMicros()), getSubscribersPerSecond(), resumedPartitions, resumedSubscribers);
+    }
+
+}
@@ -0,0 +1,53 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+//Half-open billing cycle, usage that began at from or later and before to
+public final class BillingPeriod {
+
+    private final LocalDateTime from;
+
+    private final LocalDateTime to;
+
+    public BillingPeriod(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Billing period must end after it begins: " + from + " - " + to);
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    //The calendar month, from its first day at midnight to the first day of the next
+    public static BillingPeriod of(YearMonth month) {
+        return new BillingPeriod(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    /**
+     * @return the first instant of the period
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the first instant after the period
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    long fromEpochSecond() {
+        return UsageColumns.toEpochSecond(from);
+    }
+
+    long toEpochSecond() {
+        return UsageColumns.toEpochSecond(to);
+    }
+
+    @Override
+    public String toString() {
+        return "BillingPeriod [" + from + ", " + to + ")";
+    }
+
+}
@@ -1,11 +1,11 @@
 package solid_principles_examples.open_closed.after_applying;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class CallHistory {
 
@@ -46,23 +46,101 @@ public class CallHistory {
 
     }
 
-    private static final Map<Long, List<Call>> CALLS = new HashMap<>();
+    public static final String DIRECTORY_PROPERTY = "usage.calls.dir";
 
-    public synchronized static List<Call> getCurrentCalls(Long subscriberId) {
-        if(!CALLS.containsKey(subscriberId)) {
+    //Calls live as primitive columns on the heap, or in mapped files with -Dusage.calls.dir=/var/lib/calls
+    //Call objects are only built for the list getters
+    private static volatile UsageStore store = UsageStore.fromProperty(DIRECTORY_PROPERTY);
+
+    //Copy on write, adding a listener is rare and every record iterates them
+    private static final List<UsageListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    //Replaces the store behind the history, records in the previous one are not moved over
+    public static void useStore(UsageStore usageStore) {
+        store = usageStore;
+    }
+
+    //The current store as billing reads it, follows useStore
+    public static UsageSource getUsageSource() {
+        return store;
+    }
+
+    //Builds Call objects from the store in the order they were added, prefer getTotalDuration for billing
+    public static List<Call> getCurrentCalls(Long subscriberId) {
+        return getCalls(subscriberId, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    //The subscriber's calls that began in [from, to), in begin order
+    public static List<Call> getCalls(Long subscriberId, LocalDateTime from, LocalDateTime to) {
+        return getCalls(subscriberId, UsageColumns.toEpochSecond(from), UsageColumns.toEpochSecond(to), true);
+    }
+
+    //Store order is the order of adding, until seal sorts the records
+    private static List<Call> getCalls(Long subscriberId, long from, long to, boolean sorted) {
+        UsageSnapshot snapshot = store.snapshot(subscriberId);
+        if(snapshot.size() == 0) {
             return Collections.emptyList();
         }
-        return CALLS.get(subscriberId);
+        List<Call> calls = new ArrayList<>();
+        snapshot.forEach(from, to, (begin, amount) -> calls.add(new Call(subscriberId, UsageColumns.toLocalDateTime(begin), amount)));
+        //only records that arrived late are out of order, so this is usually a single pass
+        if(sorted) {
+            calls.sort(Comparator.comparing(Call::getBegin));
+        }
+        return calls;
+    }
+
+    public static long getTotalDuration(Long subscriberId) {
+        return store.sumAmounts(subscriberId);
+    }
+
+    //Total duration of the calls that began in the period
+    public static long getTotalDuration(Long subscriberId, BillingPeriod period) {
+        return store.sumAmounts(subscriberId, period.fromEpochSecond(), period.toEpochSecond());
+    }
+
+    public static int getCallCount(Long subscriberId) {
+        return store.count(subscriberId);
+    }
+
+    //The subscriber's calls so far as a snapshot, unaffected by sessions added while it is read
+    public static UsageSnapshot getCallSnapshot(Long subscriberId) {
+        return store.snapshot(subscriberId);
+    }
+
+    //Compresses the calls that began before the given time into immutable blocks, returns how many were sealed
+    //Meant for closed billing periods, calls arriving later for them are still accepted
+    public static int seal(LocalDateTime before) {
+        return store.seal(UsageColumns.toEpochSecond(before));
+    }
+
+    public static void addSession(Long subscriberId, LocalDateTime begin, long duration) {
+        addSession(subscriberId, UsageColumns.toEpochSecond(begin), duration);
+    }
+
+    public static void addSession(Long subscriberId, long beginEpochSecond, long duration) {
+        store.add(subscriberId, beginEpochSecond, duration);
+        for (UsageListener listener : LISTENERS) {
+            listener.onUsage(subscriberId, beginEpochSecond, duration);
+        }
     }
 
-    public synchronized static void addSession(Long subscriberId, LocalDateTime begin, long duration) {
-        List<Call> calls;
-        if(!CALLS.containsKey(subscriberId)) {
-            calls = new LinkedList<>();
-            CALLS.put(subscriberId, calls);
-        } else {
-            calls = CALLS.get(subscriberId);
+    //Appends the first count records of the columns in one call, for bulk imports
+    public static void addSessions(long[] subscriberIds, long[] beginEpochSeconds, long[] durations, int count) {
+        store.addAll(subscriberIds, beginEpochSeconds, durations, count);
+        for (UsageListener listener : LISTENERS) {
+            for (int i = 0; i < count; i++) {
+                listener.onUsage(subscriberIds[i], beginEpochSeconds[i], durations[i]);
+            }
         }
-        calls.add(new Call(subscriberId, begin, duration));
+    }
+
+    //Listeners see records added from now on, after they are stored
+    public static void addListener(UsageListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(UsageListener listener) {
+        LISTENERS.remove(listener);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package solid_principles_examples.open_closed.after_applying;
+
+//Outcome of one CdrImporter run
+public class CdrImportResult {
+
+    private final long records;
+
+    private final long rejectedLines;
+
+    private final long elapsedNanos;
+
+    CdrImportResult(long records, long rejectedLines, long elapsedNanos) {
+        this.records = records;
+        this.rejectedLines = rejectedLines;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    //Records appended to the history
+    public long getRecords() {
+        return records;
+    }
+
+    //Lines skipped because they did not parse, a header line is not counted
+    public long getRejectedLines() {
+        return rejectedLines;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CdrImportResult [records=%d, rejected=%d, records/s=%.0f]", records, rejectedLines, getRecordsPerSecond());
+    }
+
+}
@@ -0,0 +1,425 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Bulk loads CDR files into CallHistory or InternetSessionHistory
+//The file is cut into ranges at line breaks, and each parser thread maps its range and parses the bytes
+//straight into longs - no String or LocalDateTime per line. Records are routed by subscriber to shard
+//threads which append whole batches, so every subscriber is written by one thread only.
+//Parsers of different ranges feed the same shard, so import order is not time order: a subscriber's
+//records reach the store out of begin order and its windowed sums and counts scan instead of binary
+//searching. Seal the history after an import (CallHistory.seal, InternetSessionHistory.seal) to sort them.
+//CSV lines are subscriberId,begin,amount. FIXED_WIDTH lines hold the same fields in columns [0, 12),
+//[12, 31) and [31, 43), blank padded. begin is epoch seconds or yyyy-MM-dd'T'HH:mm:ss (a blank instead
+//of the T is fine too), always UTC. Lines that do not parse are counted and skipped, except a first
+//line that does not parse, which is taken as a header.
+public class CdrImporter {
+
+    public enum Format {
+        CSV, FIXED_WIDTH
+    }
+
+    public enum Target {
+        CALLS, SESSIONS
+    }
+
+    private static final int MAP_WINDOW_BYTES = 256 * 1024 * 1024;
+
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+
+    //batches waiting per shard before parsers have to wait
+    private static final int QUEUED_BATCHES = 16;
+
+    private static final int ID_END = 12;
+
+    private static final int BEGIN_END = 31;
+
+    private static final int AMOUNT_END = 43;
+
+    private static final Batch END_OF_INPUT = new Batch(0);
+
+    private final Format format;
+
+    private final Target target;
+
+    private final int parsers;
+
+    private final int shards;
+
+    private final int batchSize;
+
+    public CdrImporter(Format format, Target target) {
+        this(format, target, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public CdrImporter(Format format, Target target, int parsers, int shards, int batchSize) {
+        if (parsers <= 0 || shards <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("parsers, shards and batchSize must be positive");
+        }
+        this.format = format;
+        this.target = target;
+        this.parsers = parsers;
+        this.shards = shards;
+        this.batchSize = batchSize;
+    }
+
+    public CdrImportResult importFile(Path file) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parsers + shards);
+        List<BlockingQueue<Batch>> queues = new ArrayList<>(shards);
+        List<Future<?>> shardResults = new ArrayList<>(shards);
+        List<Future<long[]>> parserResults = new ArrayList<>(parsers);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < shards; i++) {
+                BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+                queues.add(queue);
+                shardResults.add(executor.submit(() -> append(queue)));
+            }
+            long[] bounds = splitAtLines(channel, parsers);
+            try {
+                for (int i = 0; i < parsers; i++) {
+                    Parser parser = new Parser(channel, bounds[i], bounds[i + 1], queues);
+                    parserResults.add(executor.submit(parser::parse));
+                }
+                long records = 0;
+                long rejected = 0;
+                for (Future<long[]> result : parserResults) {
+                    long[] counts = await(result);
+                    records += counts[0];
+                    rejected += counts[1];
+                }
+                return new CdrImportResult(records, rejected, System.nanoTime() - start);
+            } finally {
+                //a parser that failed must not leave the shards waiting
+                for (Future<long[]> result : parserResults) {
+                    result.cancel(true);
+                }
+                for (BlockingQueue<Batch> queue : queues) {
+                    putUninterruptibly(queue, END_OF_INPUT);
+                }
+                for (Future<?> result : shardResults) {
+                    await(result);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //Keeps draining after a failure so parsers never block on a dead shard
+    private Void append(BlockingQueue<Batch> queue) throws InterruptedException {
+        RuntimeException failure = null;
+        while (true) {
+            Batch batch = queue.take();
+            if (batch == END_OF_INPUT) {
+                break;
+            }
+            if (failure != null) {
+                continue;
+            }
+            try {
+                if (target == Target.CALLS) {
+                    CallHistory.addSessions(batch.subscriberIds, batch.begins, batch.amounts, batch.count);
+                } else {
+                    InternetSessionHistory.addSessions(batch.subscriberIds, batch.begins, batch.amounts, batch.count);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    //bounds[i] to bounds[i + 1] is range i, every range but the first starts right after a line break
+    private static long[] splitAtLines(FileChannel channel, int ranges) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[ranges + 1];
+        bounds[ranges] = size;
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        for (int i = 1; i < ranges; i++) {
+            long position = Math.max(bounds[i - 1], size / ranges * i);
+            bounds[i] = size;
+            search:
+            while (position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int j = 0; j < read; j++) {
+                    if (probe.get(j) == '\n') {
+                        bounds[i] = position + j + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+        }
+        return bounds;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Import failed", e.getCause());
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Batch> queue, Batch batch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(batch);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Batch {
+
+        private final long[] subscriberIds;
+
+        private final long[] begins;
+
+        private final long[] amounts;
+
+        private int count;
+
+        private Batch(int size) {
+            subscriberIds = new long[size];
+            begins = new long[size];
+            amounts = new long[size];
+        }
+    }
+
+    //Parses one range, the fields of the current line are kept in the parser to avoid allocating
+    private final class Parser {
+
+        private final FileChannel channel;
+
+        private final long from;
+
+        private final long to;
+
+        private final List<BlockingQueue<Batch>> queues;
+
+        private final Batch[] batches;
+
+        private long subscriberId;
+
+        private long begin;
+
+        private long amount;
+
+        private long records;
+
+        private long rejected;
+
+        private Parser(FileChannel channel, long from, long to, List<BlockingQueue<Batch>> queues) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.queues = queues;
+            batches = new Batch[queues.size()];
+            for (int i = 0; i < batches.length; i++) {
+                batches[i] = new Batch(batchSize);
+            }
+        }
+
+        //Returns the number of records and of rejected lines
+        private long[] parse() throws IOException, InterruptedException {
+            long position = from;
+            boolean firstLine = from == 0;
+            while (position < to) {
+                long length = Math.min(MAP_WINDOW_BYTES, to - position);
+                boolean last = position + length == to;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int limit = (int) length;
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        line(window, lineStart, i, firstLine);
+                        firstLine = false;
+                        lineStart = i + 1;
+                    }
+                }
+                if (last && lineStart < limit) {
+                    line(window, lineStart, limit, firstLine);
+                    lineStart = limit;
+                }
+                if (lineStart == 0 && !last) {
+                    throw new IOException("Line at " + position + " is longer than " + MAP_WINDOW_BYTES + " bytes");
+                }
+                position += last ? length : lineStart;
+            }
+            for (int i = 0; i < batches.length; i++) {
+                if (batches[i].count > 0) {
+                    queues.get(i).put(batches[i]);
+                }
+            }
+            return new long[]{records, rejected};
+        }
+
+        private void line(ByteBuffer buffer, int start, int end, boolean firstLine) throws InterruptedException {
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start) {
+                return;
+            }
+            boolean parsed = format == Format.CSV ? parseCsv(buffer, start, end) : parseFixedWidth(buffer, start, end);
+            if (!parsed) {
+                if (!firstLine) {
+                    rejected++;
+                }
+                return;
+            }
+            int shard = Math.floorMod(Long.hashCode(subscriberId), batches.length);
+            Batch batch = batches[shard];
+            batch.subscriberIds[batch.count] = subscriberId;
+            batch.begins[batch.count] = begin;
+            batch.amounts[batch.count] = amount;
+            if (++batch.count == batchSize) {
+                queues.get(shard).put(batch);
+                batches[shard] = new Batch(batchSize);
+            }
+            records++;
+        }
+
+        private boolean parseCsv(ByteBuffer buffer, int start, int end) {
+            int firstComma = indexOf(buffer, start, end, (byte) ',');
+            int secondComma = firstComma < 0 ? -1 : indexOf(buffer, firstComma + 1, end, (byte) ',');
+            if (secondComma < 0) {
+                return false;
+            }
+            subscriberId = parseNumber(buffer, start, firstComma);
+            begin = parseTimestamp(buffer, firstComma + 1, secondComma);
+            amount = parseNumber(buffer, secondComma + 1, end);
+            return subscriberId >= 0 && begin != Long.MIN_VALUE && amount >= 0;
+        }
+
+        private boolean parseFixedWidth(ByteBuffer buffer, int start, int end) {
+            if (end - start < AMOUNT_END) {
+                return false;
+            }
+            subscriberId = parseNumber(buffer, start, start + ID_END);
+            begin = parseTimestamp(buffer, start + ID_END, start + BEGIN_END);
+            amount = parseNumber(buffer, start + BEGIN_END, start + AMOUNT_END);
+            return subscriberId >= 0 && begin != Long.MIN_VALUE && amount >= 0;
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Non-negative decimal with optional surrounding blanks, -1 when the field is not one
+    static long parseNumber(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        //18 digits always fit in a long
+        if (end == start || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    //Epoch seconds, or Long.MIN_VALUE when the field is neither a number nor yyyy-MM-dd'T'HH:mm:ss
+    static long parseTimestamp(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start != 19) {
+            long epochSecond = parseNumber(buffer, start, end);
+            return epochSecond < 0 ? Long.MIN_VALUE : epochSecond;
+        }
+        byte separator = buffer.get(start + 10);
+        if (buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-' || (separator != 'T' && separator != ' ')
+                || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ':') {
+            return Long.MIN_VALUE;
+        }
+        long year = parseNumber(buffer, start, start + 4);
+        long month = parseNumber(buffer, start + 5, start + 7);
+        long day = parseNumber(buffer, start + 8, start + 10);
+        long hour = parseNumber(buffer, start + 11, start + 13);
+        long minute = parseNumber(buffer, start + 14, start + 16);
+        long second = parseNumber(buffer, start + 17, start + 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth((int) year, (int) month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        return epochDay((int) year, (int) month, (int) day) * 86_400 + hour * 3_600 + minute * 60 + second;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    //Days since 1970-01-01 of a proleptic Gregorian date, the same as LocalDate.toEpochDay
+    private static long epochDay(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+}
@@ -1,7 +1,5 @@
 package solid_principles_examples.open_closed.after_applying;
 
-import java.util.List;
-
 public class ISPSubscriber extends Subscriber {
 
     private long freeUsage;
@@ -9,14 +7,33 @@ public class ISPSubscriber extends Subscriber {
     //only for demonstration
     @Override
     public double calculateBill() {
-        List<InternetSessionHistory.InternetSession> sessions = InternetSessionHistory.getCurrentSessions(subscriberId);
-        long totalData = sessions.stream().mapToLong(InternetSessionHistory.InternetSession::getDataUsed).sum();
-        long chargeableData = totalData - freeUsage;
-        
-        if(chargeableData <= 0) {
-        	return 0;
-        }
-        return chargeableData*baseRate/100;
+        return RatingEngine.toUnits(calculateBillMicros());
+    }
+
+    //billed by data used, freeUsage applies to each period
+    @Override
+    protected UsageSource usageSource() {
+        return InternetSessionHistory.getUsageSource();
+    }
+
+    //Bill for the sessions that began in the period
+    public double calculateBill(BillingPeriod period) {
+        return calculateBill(period, usageSource());
+    }
+
+    public long calculateBillMicros(BillingPeriod period) {
+        return calculateBillMicros(period, usageSource());
+    }
+
+    @Override
+    protected boolean isDataMetered() {
+        return true;
+    }
+
+    //freeUsage is the allowance of the default plan, a plan that was set brings its own
+    @Override
+    protected RatePlan effectiveRatePlan() {
+        return ratePlan != null ? ratePlan : super.effectiveRatePlan().withFreeAllowance(freeUsage);
     }
 
     /**
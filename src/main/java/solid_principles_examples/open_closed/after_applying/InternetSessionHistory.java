@@ -1,11 +1,11 @@
 package solid_principles_examples.open_closed.after_applying;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class InternetSessionHistory {
 
@@ -45,23 +45,101 @@ public class InternetSessionHistory {
         }
 
     }
-    private static final Map<Long, List<InternetSession>> SESSIONS = new HashMap<>();
+    public static final String DIRECTORY_PROPERTY = "usage.sessions.dir";
 
-    public synchronized static List<InternetSession> getCurrentSessions(Long subscriberId) {
-        if(!SESSIONS.containsKey(subscriberId)) {
+    //Sessions live as primitive columns on the heap, or in mapped files with -Dusage.sessions.dir=/var/lib/sessions
+    //InternetSession objects are only built for the list getters
+    private static volatile UsageStore store = UsageStore.fromProperty(DIRECTORY_PROPERTY);
+
+    //Copy on write, adding a listener is rare and every record iterates them
+    private static final List<UsageListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    //Replaces the store behind the history, records in the previous one are not moved over
+    public static void useStore(UsageStore usageStore) {
+        store = usageStore;
+    }
+
+    //The current store as billing reads it, follows useStore
+    public static UsageSource getUsageSource() {
+        return store;
+    }
+
+    //Builds InternetSession objects from the store in the order they were added, prefer getTotalDataUsed for billing
+    public static List<InternetSession> getCurrentSessions(Long subscriberId) {
+        return getSessions(subscriberId, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    //The subscriber's sessions that began in [from, to), in begin order
+    public static List<InternetSession> getSessions(Long subscriberId, LocalDateTime from, LocalDateTime to) {
+        return getSessions(subscriberId, UsageColumns.toEpochSecond(from), UsageColumns.toEpochSecond(to), true);
+    }
+
+    //Store order is the order of adding, until seal sorts the records
+    private static List<InternetSession> getSessions(Long subscriberId, long from, long to, boolean sorted) {
+        UsageSnapshot snapshot = store.snapshot(subscriberId);
+        if(snapshot.size() == 0) {
             return Collections.emptyList();
         }
-        return SESSIONS.get(subscriberId);
+        List<InternetSession> sessions = new ArrayList<>();
+        snapshot.forEach(from, to, (begin, amount) -> sessions.add(new InternetSession(subscriberId, UsageColumns.toLocalDateTime(begin), amount)));
+        //only records that arrived late are out of order, so this is usually a single pass
+        if(sorted) {
+            sessions.sort(Comparator.comparing(InternetSession::getBegin));
+        }
+        return sessions;
+    }
+
+    public static long getTotalDataUsed(Long subscriberId) {
+        return store.sumAmounts(subscriberId);
+    }
+
+    //Total data used of the sessions that began in the period
+    public static long getTotalDataUsed(Long subscriberId, BillingPeriod period) {
+        return store.sumAmounts(subscriberId, period.fromEpochSecond(), period.toEpochSecond());
+    }
+
+    public static int getSessionCount(Long subscriberId) {
+        return store.count(subscriberId);
+    }
+
+    //The subscriber's sessions so far as a snapshot, unaffected by sessions added while it is read
+    public static UsageSnapshot getSessionSnapshot(Long subscriberId) {
+        return store.snapshot(subscriberId);
+    }
+
+    //Compresses the sessions that began before the given time into immutable blocks, returns how many were sealed
+    //Meant for closed billing periods, sessions arriving later for them are still accepted
+    public static int seal(LocalDateTime before) {
+        return store.seal(UsageColumns.toEpochSecond(before));
+    }
+
+    public static void addSession(Long subscriberId, LocalDateTime begin, long dataUsed) {
+        addSession(subscriberId, UsageColumns.toEpochSecond(begin), dataUsed);
+    }
+
+    public static void addSession(Long subscriberId, long beginEpochSecond, long dataUsed) {
+        store.add(subscriberId, beginEpochSecond, dataUsed);
+        for (UsageListener listener : LISTENERS) {
+            listener.onUsage(subscriberId, beginEpochSecond, dataUsed);
+        }
     }
 
-    public synchronized static void addSession(Long subscriberId, LocalDateTime begin, long dataUsed) {
-        List<InternetSession> sessions;
-        if(!SESSIONS.containsKey(subscriberId)) {
-            sessions = new LinkedList<>();
-            SESSIONS.put(subscriberId, sessions);
-        } else {
-            sessions = SESSIONS.get(subscriberId);
+    //Appends the first count records of the columns in one call, for bulk imports
+    public static void addSessions(long[] subscriberIds, long[] beginEpochSeconds, long[] dataUsed, int count) {
+        store.addAll(subscriberIds, beginEpochSeconds, dataUsed, count);
+        for (UsageListener listener : LISTENERS) {
+            for (int i = 0; i < count; i++) {
+                listener.onUsage(subscriberIds[i], beginEpochSeconds[i], dataUsed[i]);
+            }
         }
-        sessions.add(new InternetSession(subscriberId, begin, dataUsed));
+    }
+
+    //Listeners see records added from now on, after they are stored
+    public static void addListener(UsageListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(UsageListener listener) {
+        LISTENERS.remove(listener);
     }
 }
\ No newline at end of file
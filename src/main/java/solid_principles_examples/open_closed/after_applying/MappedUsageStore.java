@@ -0,0 +1,698 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Keeps usage records in memory-mapped segment files, so history survives a restart and is not bounded by heap
+//Every record is 32 bytes: [subscriberId][begin][amount][check], the check being a hash of the three
+//written last, so a record torn by a crash never validates. Appends claim a slot with one atomic
+//increment and write it in place - there is no global lock.
+//Each subscriber has an on-heap list of its slots plus running count and total, and reads go straight
+//to the mapped buffers without copying records to the heap.
+//A complete segment's subscriber directory is saved next to it as usage-N.idx - per subscriber its slots
+//in the segment, their count, total and begin range. Appends never build it: seal saves the directories
+//of complete segments whose records all began before its cutoff, close those of the rest. Open loads
+//the slot lists from the directories, 4 bytes a record, and decodes records only of the segments that
+//have none: the tail, or complete ones a crash left unindexed, which get their directory then.
+//usage.meta holds the segment size, opening the directory with another one fails.
+public class MappedUsageStore implements UsageStore, Closeable {
+
+    static final int RECORD_BYTES = 4 * Long.BYTES;
+
+    private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "usage-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private static final String META_FILE = "usage.meta";
+
+    private static final int META_MAGIC = 0x55534D45;
+
+    private static final int INDEX_MAGIC = 0x55534958;
+
+    private static final int VERSION = 1;
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    //copied on write when a segment is added
+    private volatile Segment[] segments;
+
+    private final AtomicLong nextSlot;
+
+    private final Map<Long, Postings> subscribers = new ConcurrentHashMap<>();
+
+    private MappedUsageStore(Path directory, int recordsPerSegment, Segment[] segments, long nextSlot) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.segments = segments;
+        this.nextSlot = new AtomicLong(nextSlot);
+    }
+
+    //With the segment size the directory was created with, the default one for a new directory
+    public static MappedUsageStore open(Path directory) throws IOException {
+        int stored = readSegmentBytes(directory);
+        return open(directory, stored == 0 ? DEFAULT_SEGMENT_BYTES : stored);
+    }
+
+    //segmentBytes has to be the size the directory was created with
+    public static MappedUsageStore open(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes < RECORD_BYTES || segmentBytes % RECORD_BYTES != 0) {
+            throw new IllegalArgumentException("segmentBytes must be a positive multiple of " + RECORD_BYTES + ": " + segmentBytes);
+        }
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().collect(Collectors.toList());
+        }
+        int stored = readSegmentBytes(directory);
+        if (stored == 0 && !files.isEmpty()) {
+            //written before usage.meta existed, a segment file is exactly segmentBytes long
+            stored = (int) Files.size(files.get(0));
+        }
+        if (stored != 0 && stored != segmentBytes) {
+            throw new IOException("Usage directory " + directory + " has " + stored + " byte segments, not " + segmentBytes);
+        }
+        if (!Files.exists(directory.resolve(META_FILE))) {
+            writeMeta(directory, segmentBytes);
+        }
+
+        int recordsPerSegment = segmentBytes / RECORD_BYTES;
+        Segment[] segments = new Segment[files.size()];
+        for (int i = 0; i < segments.length; i++) {
+            if (!files.get(i).equals(segmentPath(directory, i))) {
+                throw new IOException("Segment " + segmentPath(directory, i) + " is missing");
+            }
+            segments[i] = new Segment(map(files.get(i), segmentBytes));
+        }
+
+        MappedUsageStore store = new MappedUsageStore(directory, recordsPerSegment, segments, 0);
+        long nextSlot = 0;
+        boolean[] indexed = new boolean[segments.length];
+        for (int segment = 0; segment < segments.length; segment++) {
+            SegmentDirectory loaded = SegmentDirectory.read(indexPath(directory, segment), recordsPerSegment);
+            if (loaded != null) {
+                indexed[segment] = true;
+                segments[segment].indexed = true;
+            } else {
+                loaded = SegmentDirectory.scan(segments[segment].buffer, recordsPerSegment);
+            }
+            segments[segment].maxBegin.set(loaded.maxBegin());
+            loaded.addTo(store, (long) segment * recordsPerSegment);
+            if (loaded.end > 0) {
+                nextSlot = (long) segment * recordsPerSegment + loaded.end;
+            }
+        }
+        //every segment before the one the next append goes to is complete, torn slots included
+        for (int segment = 0; segment < segments.length; segment++) {
+            long segmentEnd = (long) (segment + 1) * recordsPerSegment;
+            if (segmentEnd <= nextSlot) {
+                segments[segment].written.set(recordsPerSegment);
+                if (!indexed[segment]) {
+                    store.writeIndex(segment);
+                }
+            } else if (segmentEnd - recordsPerSegment < nextSlot) {
+                segments[segment].written.set((int) (nextSlot % recordsPerSegment));
+            }
+        }
+        store.nextSlot.set(nextSlot);
+        return store;
+    }
+
+    @Override
+    public void add(Long subscriberId, long begin, long amount) {
+        long slot = nextSlot.getAndIncrement();
+        write(slot, subscriberId, begin, amount);
+        postings(subscriberId).add(slot, begin, amount);
+        segment(slot).written(1, begin);
+    }
+
+    private void write(long slot, long subscriberId, long begin, long amount) {
+        MappedByteBuffer buffer = segment(slot).buffer;
+        int offset = offset(slot);
+        buffer.putLong(offset, subscriberId);
+        buffer.putLong(offset + Long.BYTES, begin);
+        buffer.putLong(offset + 2 * Long.BYTES, amount);
+        //the check must not become visible before the fields it covers
+        VarHandle.releaseFence();
+        buffer.putLong(offset + 3 * Long.BYTES, check(subscriberId, begin, amount));
+    }
+
+    //Claims the slots of the whole batch with one atomic add
+    @Override
+    public void addAll(long[] subscriberIds, long[] begins, long[] amounts, int count) {
+        long first = nextSlot.getAndAdd(count);
+        for (int i = 0; i < count; i++) {
+            write(first + i, subscriberIds[i], begins[i], amounts[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            postings(subscriberIds[i]).add(first + i, begins[i], amounts[i]);
+        }
+        //the batch can span segments, each one is told how many of its slots it got and their latest begin
+        long slot = first;
+        long end = first + count;
+        while (slot < end) {
+            long segmentEnd = (slot / recordsPerSegment + 1) * recordsPerSegment;
+            int inSegment = (int) (Math.min(end, segmentEnd) - slot);
+            long maxBegin = Long.MIN_VALUE;
+            for (int i = (int) (slot - first); i < slot - first + inSegment; i++) {
+                maxBegin = Math.max(maxBegin, begins[i]);
+            }
+            segment(slot).written(inSegment, maxBegin);
+            slot += inSegment;
+        }
+    }
+
+    //Saves the directory of every complete segment that has none and whose records all began before the
+    //given time, returns the number of records of those segments
+    private synchronized int writeIndexes(long before) {
+        Segment[] current = segments;
+        int records = 0;
+        for (int index = 0; index < current.length; index++) {
+            Segment segment = current[index];
+            if (!segment.indexed && segment.written.get() == recordsPerSegment && segment.maxBegin.get() < before) {
+                try {
+                    writeIndex(index);
+                } catch (IOException e) {
+                    //the records are stored, the next open scans the segment
+                    throw new UncheckedIOException("Cannot write the directory of usage segment " + segmentPath(directory, index), e);
+                }
+                records += recordsPerSegment;
+            }
+        }
+        return records;
+    }
+
+    private void writeIndex(int index) throws IOException {
+        SegmentDirectory.scan(segments[index].buffer, recordsPerSegment).write(indexPath(directory, index));
+        segments[index].indexed = true;
+    }
+
+    @Override
+    public UsageSnapshot snapshot(Long subscriberId) {
+        Postings postings = subscribers.get(subscriberId);
+        return postings == null ? UsageColumns.EMPTY : postings.snapshot();
+    }
+
+    @Override
+    public long sumAmounts(Long subscriberId) {
+        Postings postings = subscribers.get(subscriberId);
+        return postings == null ? 0 : postings.total();
+    }
+
+    @Override
+    public long sumAmounts(Long subscriberId, long from, long to) {
+        return snapshot(subscriberId).sumAmounts(from, to);
+    }
+
+    @Override
+    public int count(Long subscriberId) {
+        Postings postings = subscribers.get(subscriberId);
+        return postings == null ? 0 : postings.count();
+    }
+
+    //Records are already off heap and fixed-width, so sealing a period saves the directories of the complete
+    //segments whose records all began before the given time, so the next open reads them instead of
+    //scanning. Returns the number of records in those segments.
+    //Subscribers whose records arrived out of begin order, as a bulk import delivers them, get their slot
+    //lists sorted by begin, so windows are binary searched again. The segment directories keep append order,
+    //after a restart such subscribers need another seal.
+    @Override
+    public int seal(long before) {
+        for (Postings postings : subscribers.values()) {
+            postings.sortByBegin();
+        }
+        return writeIndexes(before);
+    }
+
+    public long getRecordCount() {
+        return nextSlot.get();
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    //Writes every mapped record to disk, a crash of the process alone loses nothing even without it
+    public void flush() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    //Saves the directories no seal saved, the mappings themselves are released once the buffers are garbage collected
+    @Override
+    public void close() {
+        flush();
+        writeIndexes(Long.MAX_VALUE);
+    }
+
+    private Postings postings(Long subscriberId) {
+        Postings postings = subscribers.get(subscriberId);
+        if (postings == null) {
+            postings = subscribers.computeIfAbsent(subscriberId, id -> new Postings());
+        }
+        return postings;
+    }
+
+    private Segment segment(long slot) {
+        int index = (int) (slot / recordsPerSegment);
+        Segment[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        return addSegments(index);
+    }
+
+    private synchronized Segment addSegments(int index) {
+        Segment[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        Segment[] grown = Arrays.copyOf(current, index + 1);
+        try {
+            for (int i = current.length; i <= index; i++) {
+                grown[i] = new Segment(map(segmentPath(directory, i), recordsPerSegment * RECORD_BYTES));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create usage segment " + segmentPath(directory, index), e);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot % recordsPerSegment) * RECORD_BYTES;
+    }
+
+    private long getBegin(long slot) {
+        return segment(slot).buffer.getLong(offset(slot) + Long.BYTES);
+    }
+
+    private long getAmount(long slot) {
+        return segment(slot).buffer.getLong(offset(slot) + 2 * Long.BYTES);
+    }
+
+    private static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static Path indexPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, INDEX_SUFFIX));
+    }
+
+    //0 when the directory has no usage.meta yet
+    private static int readSegmentBytes(Path directory) throws IOException {
+        Path meta = directory.resolve(META_FILE);
+        if (!Files.exists(meta)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(meta));
+        if (buffer.remaining() != 3 * Integer.BYTES || buffer.getInt() != META_MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(meta + " is not a usage store description");
+        }
+        return buffer.getInt();
+    }
+
+    private static void writeMeta(Path directory, int segmentBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES);
+        buffer.putInt(META_MAGIC).putInt(VERSION).putInt(segmentBytes);
+        writeAtomically(directory.resolve(META_FILE), buffer.array());
+    }
+
+    //Forced to disk under a temporary name first, so the file is either complete or absent
+    private static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //A new file is sparse, unwritten slots read as zeros which never pass the check
+    private static MappedByteBuffer map(Path file, int segmentBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    //Never 0, so an all-zero slot is never a record
+    private static long check(long subscriberId, long begin, long amount) {
+        long hash = subscriberId * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ begin) * 0xC2B2AE3D27D4EB4FL;
+        hash = (hash ^ amount) * 0x165667B19E3779F9L;
+        return (hash ^ (hash >>> 29)) | 1;
+    }
+
+    private static final class Segment {
+
+        private final MappedByteBuffer buffer;
+
+        //slots whose append has finished, torn ones of a crash counted in at open
+        private final AtomicInteger written = new AtomicInteger();
+
+        //latest begin of the records written so far
+        private final AtomicLong maxBegin = new AtomicLong(Long.MIN_VALUE);
+
+        //whether usage-N.idx is saved, guarded by the store
+        private boolean indexed;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        //Counts the slots as written, the plain read skips the update for records older than the latest
+        private void written(int count, long begin) {
+            if (begin > maxBegin.get()) {
+                maxBegin.accumulateAndGet(begin, Math::max);
+            }
+            written.addAndGet(count);
+        }
+    }
+
+    //Which slots of one segment belong to which subscriber, with per subscriber count, total and begin range
+    //File layout: [magic][version][records per segment][subscriber count], then per subscriber
+    //[subscriberId][count][ordered][total][min begin][max begin][offsets in the segment], then a CRC32 of it all.
+    private static final class SegmentDirectory {
+
+        private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+        private static final int ENTRY_BYTES = 4 * Long.BYTES + 2 * Integer.BYTES;
+
+        private final int recordsPerSegment;
+
+        private final Map<Long, Entry> entries = new HashMap<>();
+
+        //one past the last valid record of the segment, 0 when it has none
+        private int end;
+
+        private int records;
+
+        private SegmentDirectory(int recordsPerSegment) {
+            this.recordsPerSegment = recordsPerSegment;
+        }
+
+        //Decodes every slot of the segment, torn and unwritten ones are skipped
+        private static SegmentDirectory scan(MappedByteBuffer buffer, int recordsPerSegment) {
+            SegmentDirectory directory = new SegmentDirectory(recordsPerSegment);
+            for (int record = 0; record < recordsPerSegment; record++) {
+                int offset = record * RECORD_BYTES;
+                long subscriberId = buffer.getLong(offset);
+                long begin = buffer.getLong(offset + Long.BYTES);
+                long amount = buffer.getLong(offset + 2 * Long.BYTES);
+                if (buffer.getLong(offset + 3 * Long.BYTES) == check(subscriberId, begin, amount)) {
+                    directory.entries.computeIfAbsent(subscriberId, id -> new Entry()).add(record, begin, amount);
+                    directory.records++;
+                    directory.end = record + 1;
+                }
+            }
+            return directory;
+        }
+
+        //null when the file is missing or damaged, the segment is scanned instead
+        private static SegmentDirectory read(Path file, int recordsPerSegment) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < HEADER_BYTES + Integer.BYTES) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.remaining() - Integer.BYTES);
+            if ((int) crc.getValue() != buffer.getInt(buffer.remaining() - Integer.BYTES)
+                    || buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION || buffer.getInt() != recordsPerSegment) {
+                return null;
+            }
+            SegmentDirectory directory = new SegmentDirectory(recordsPerSegment);
+            //only complete segments have a directory
+            directory.end = recordsPerSegment;
+            int subscribers = buffer.getInt();
+            for (int i = 0; i < subscribers; i++) {
+                long subscriberId = buffer.getLong();
+                Entry entry = new Entry();
+                entry.size = buffer.getInt();
+                entry.ordered = buffer.getInt() != 0;
+                entry.total = buffer.getLong();
+                entry.minBegin = buffer.getLong();
+                entry.maxBegin = buffer.getLong();
+                entry.offsets = new int[entry.size];
+                buffer.asIntBuffer().get(entry.offsets);
+                buffer.position(buffer.position() + entry.size * Integer.BYTES);
+                directory.entries.put(subscriberId, entry);
+                directory.records += entry.size;
+            }
+            return directory;
+        }
+
+        private void write(Path file) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + entries.size() * ENTRY_BYTES + records * Integer.BYTES + Integer.BYTES);
+            buffer.putInt(INDEX_MAGIC).putInt(VERSION).putInt(recordsPerSegment).putInt(entries.size());
+            for (Map.Entry<Long, Entry> subscriber : entries.entrySet()) {
+                Entry entry = subscriber.getValue();
+                buffer.putLong(subscriber.getKey()).putInt(entry.size).putInt(entry.ordered ? 1 : 0)
+                        .putLong(entry.total).putLong(entry.minBegin).putLong(entry.maxBegin);
+                buffer.asIntBuffer().put(entry.offsets, 0, entry.size);
+                buffer.position(buffer.position() + entry.size * Integer.BYTES);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            writeAtomically(file, buffer.array());
+        }
+
+        private long maxBegin() {
+            long maxBegin = Long.MIN_VALUE;
+            for (Entry entry : entries.values()) {
+                maxBegin = Math.max(maxBegin, entry.maxBegin);
+            }
+            return maxBegin;
+        }
+
+        private void addTo(MappedUsageStore store, long base) {
+            for (Map.Entry<Long, Entry> subscriber : entries.entrySet()) {
+                Entry entry = subscriber.getValue();
+                store.postings(subscriber.getKey()).addAll(base, entry.offsets, entry.size, entry.total,
+                        entry.minBegin, entry.maxBegin, entry.ordered);
+            }
+        }
+
+        private static final class Entry {
+
+            private int[] offsets = new int[4];
+
+            private int size;
+
+            private long total;
+
+            private long minBegin = Long.MAX_VALUE;
+
+            private long maxBegin = Long.MIN_VALUE;
+
+            private boolean ordered = true;
+
+            private void add(int offset, long begin, long amount) {
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                }
+                offsets[size++] = offset;
+                total += amount;
+                if (begin < maxBegin) {
+                    ordered = false;
+                }
+                minBegin = Math.min(minBegin, begin);
+                maxBegin = Math.max(maxBegin, begin);
+            }
+        }
+    }
+
+    //Slots of one subscriber in append order, with the running aggregates
+    private final class Postings {
+
+        private long[] slots = new long[4];
+
+        private int size;
+
+        private long total;
+
+        private boolean ordered = true;
+
+        private long lastBegin = Long.MIN_VALUE;
+
+        private synchronized void add(long slot, long begin, long amount) {
+            if (size == slots.length) {
+                //a new array, snapshots keep reading the old one
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+            total += amount;
+            if (begin < lastBegin) {
+                ordered = false;
+            }
+            lastBegin = Math.max(lastBegin, begin);
+        }
+
+        //The subscriber's slots of one segment, from its directory
+        private synchronized void addAll(long base, int[] offsets, int count, long segmentTotal,
+                long minBegin, long maxBegin, boolean segmentOrdered) {
+            if (size + count > slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(size * 2, size + count));
+            }
+            for (int i = 0; i < count; i++) {
+                slots[size++] = base + offsets[i];
+            }
+            total += segmentTotal;
+            if (!segmentOrdered || minBegin < lastBegin) {
+                ordered = false;
+            }
+            lastBegin = Math.max(lastBegin, maxBegin);
+        }
+
+        private synchronized void sortByBegin() {
+            if (ordered) {
+                return;
+            }
+            long[] begins = new long[size];
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                begins[i] = getBegin(slots[i]);
+                sorted[i] = slots[i];
+            }
+            UsageColumns.sortByBegin(begins, sorted);
+            //a new array, snapshots keep reading the old one
+            slots = Arrays.copyOf(sorted, Math.max(slots.length, 4));
+            ordered = true;
+            lastBegin = size == 0 ? Long.MIN_VALUE : begins[size - 1];
+        }
+
+        private synchronized long total() {
+            return total;
+        }
+
+        private synchronized int count() {
+            return size;
+        }
+
+        private synchronized MappedSnapshot snapshot() {
+            return new MappedSnapshot(slots, size, total, ordered);
+        }
+    }
+
+    //Reads begins and amounts from the mapped segments as it goes
+    private final class MappedSnapshot implements UsageSnapshot {
+
+        private final long[] slots;
+
+        private final int size;
+
+        private final long total;
+
+        private final boolean ordered;
+
+        private MappedSnapshot(long[] slots, int size, long total, boolean ordered) {
+            this.slots = slots;
+            this.size = size;
+            this.total = total;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long sumAmounts() {
+            return total;
+        }
+
+        @Override
+        public long sumAmounts(long from, long to) {
+            long sum = 0;
+            if (ordered) {
+                int end = lowerBound(to);
+                for (int i = lowerBound(from); i < end; i++) {
+                    sum += getAmount(slots[i]);
+                }
+                return sum;
+            }
+            for (int i = 0; i < size; i++) {
+                long begin = getBegin(slots[i]);
+                if (begin >= from && begin < to) {
+                    sum += getAmount(slots[i]);
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        public int count(long from, long to) {
+            if (ordered) {
+                return lowerBound(to) - lowerBound(from);
+            }
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                long begin = getBegin(slots[i]);
+                if (begin >= from && begin < to) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void forEach(long from, long to, UsageConsumer consumer) {
+            int first = ordered ? lowerBound(from) : 0;
+            int end = ordered ? lowerBound(to) : size;
+            for (int i = first; i < end; i++) {
+                long begin = getBegin(slots[i]);
+                if (begin >= from && begin < to) {
+                    consumer.accept(begin, getAmount(slots[i]));
+                }
+            }
+        }
+
+        private int lowerBound(long begin) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getBegin(slots[middle]) < begin) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+}
@@ -1,15 +1,26 @@
 package solid_principles_examples.open_closed.after_applying;
 
-import java.util.List;
-
 public class PhoneSubscriber extends Subscriber {
 
     //only for demonstration - open for extension
     @Override
     public double calculateBill() {
-        List<CallHistory.Call> sessions = CallHistory.getCurrentCalls(subscriberId);
-        long totalDuration = sessions.stream().mapToLong(CallHistory.Call::getDuration).sum();
-        return totalDuration*baseRate/100;
+        return RatingEngine.toUnits(calculateBillMicros());
+    }
+
+    //billed by call duration
+    @Override
+    protected UsageSource usageSource() {
+        return CallHistory.getUsageSource();
+    }
+
+    //Bill for the calls that began in the period
+    public double calculateBill(BillingPeriod period) {
+        return calculateBill(period, usageSource());
+    }
+
+    public long calculateBillMicros(BillingPeriod period) {
+        return calculateBillMicros(period, usageSource());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.Arrays;
+
+//Graduated tariff in fixed-point money: each unit of usage past the free allowance is charged at the
+//rate of the tier it falls in. Rates are micros (millionths of the currency unit) per unit of usage,
+//seconds for calls and whatever unit sessions record data in.
+public final class RatePlan {
+
+    private final long freeAllowance;
+
+    //tier k covers chargeable usage [starts[k], ends[k]), the last tier never ends
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long[] ratesMicros;
+
+    //starts[0] must be 0 and starts must be ascending, one rate per tier
+    public RatePlan(long freeAllowance, long[] starts, long[] ratesMicros) {
+        if (freeAllowance < 0) {
+            throw new IllegalArgumentException("freeAllowance must not be negative: " + freeAllowance);
+        }
+        if (starts.length == 0 || starts.length != ratesMicros.length || starts[0] != 0) {
+            throw new IllegalArgumentException("Tiers must start at 0 and have one rate each");
+        }
+        for (int k = 0; k < starts.length; k++) {
+            if (k > 0 && starts[k] <= starts[k - 1]) {
+                throw new IllegalArgumentException("Tier starts must be ascending: " + Arrays.toString(starts));
+            }
+            if (ratesMicros[k] < 0) {
+                throw new IllegalArgumentException("Rates must not be negative: " + Arrays.toString(ratesMicros));
+            }
+        }
+        this.freeAllowance = freeAllowance;
+        this.starts = starts.clone();
+        this.ratesMicros = ratesMicros.clone();
+        ends = new long[starts.length];
+        for (int k = 0; k < starts.length; k++) {
+            ends[k] = k + 1 < starts.length ? starts[k + 1] : Long.MAX_VALUE;
+        }
+    }
+
+    //One rate for every unit
+    public static RatePlan flat(long rateMicros) {
+        return new RatePlan(0, new long[]{0}, new long[]{rateMicros});
+    }
+
+    //The same tiers, charged only after the given usage
+    public RatePlan withFreeAllowance(long allowance) {
+        return new RatePlan(allowance, starts, ratesMicros);
+    }
+
+    public long getFreeAllowance() {
+        return freeAllowance;
+    }
+
+    public int getTierCount() {
+        return starts.length;
+    }
+
+    long getStart(int tier) {
+        return starts[tier];
+    }
+
+    long getEnd(int tier) {
+        return ends[tier];
+    }
+
+    long getRateMicros(int tier) {
+        return ratesMicros[tier];
+    }
+
+    @Override
+    public String toString() {
+        return "RatePlan [freeAllowance=" + freeAllowance + ", starts=" + Arrays.toString(starts) + ", ratesMicros=" + Arrays.toString(ratesMicros) + "]";
+    }
+
+}
@@ -0,0 +1,81 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.math.BigDecimal;
+
+//Prices usage with a RatePlan in long micros, so bills are exact and add up exactly across subscribers
+//rateAll works on whole columns: one pass per tier over the usage array, with nothing in the loop
+//body but subtract, shift, and, multiply and add. C2's superword pass can vectorize that on its own, so no
+//Vector API (still incubating, and not on the compile path of this build) is needed.
+//Charges have to stay below Long.MAX_VALUE micros, about 9.2 trillion currency units.
+public final class RatingEngine {
+
+    public static final long MICROS_PER_UNIT = 1_000_000;
+
+    //usages and charges of one block take 16KB
+    private static final int BLOCK = 1024;
+
+    private RatingEngine() {
+
+    }
+
+    //Charge in micros for the usage, overflow throws instead of wrapping
+    public static long rate(long usage, RatePlan plan) {
+        long chargeable = usage - plan.getFreeAllowance();
+        long charge = 0;
+        for (int k = 0; k < plan.getTierCount() && chargeable > plan.getStart(k); k++) {
+            long inTier = Math.min(chargeable, plan.getEnd(k)) - plan.getStart(k);
+            charge = Math.addExact(charge, Math.multiplyExact(inTier, plan.getRateMicros(k)));
+        }
+        return charge;
+    }
+
+    //Charges in micros for the first count usages, written to charges
+    //Same results as rate for every element, the overflow checks are left out to keep the loop vectorizable.
+    //Works through the columns in blocks small enough to stay in L1 while every tier passes over them.
+    public static void rateAll(long[] usages, long[] charges, int count, RatePlan plan) {
+        long free = plan.getFreeAllowance();
+        for (int blockStart = 0; blockStart < count; blockStart += BLOCK) {
+            int blockEnd = Math.min(blockStart + BLOCK, count);
+            for (int k = 0; k < plan.getTierCount(); k++) {
+                long start = plan.getStart(k);
+                long width = plan.getEnd(k) - start;
+                long rate = plan.getRateMicros(k);
+                if (k == 0) {
+                    for (int i = blockStart; i < blockEnd; i++) {
+                        charges[i] = clamp(usages[i] - free - start, width) * rate;
+                    }
+                } else {
+                    for (int i = blockStart; i < blockEnd; i++) {
+                        charges[i] += clamp(usages[i] - free - start, width) * rate;
+                    }
+                }
+            }
+        }
+    }
+
+    //min(max(value, 0), width) with shifts and masks only - C2 on JDK 17 does not vectorize Math.min and max of longs
+    private static long clamp(long value, long width) {
+        long positive = value & ~(value >> 63);
+        long over = positive - width;
+        return width + (over & (over >> 63));
+    }
+
+    //Exact total of the first count charges
+    public static long sum(long[] charges, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total = Math.addExact(total, charges[i]);
+        }
+        return total;
+    }
+
+    public static BigDecimal toDecimal(long micros) {
+        return BigDecimal.valueOf(micros, 6);
+    }
+
+    //For display and the double based calculateBill, keep micros for anything that is added up
+    public static double toUnits(long micros) {
+        return micros / (double) MICROS_PER_UNIT;
+    }
+
+}
@@ -11,6 +11,9 @@ public abstract class Subscriber {
 	
 	protected int baseRate;
 
+	//null bills baseRate / 100 per unit
+	protected RatePlan ratePlan;
+
 	public Long getSubscriberId() {
 		return subscriberId;
 	}
@@ -43,6 +46,50 @@ public abstract class Subscriber {
 		this.baseRate = baseRate;
 	}
 
+	public RatePlan getRatePlan() {
+		return ratePlan;
+	}
+
+	public void setRatePlan(RatePlan ratePlan) {
+		this.ratePlan = ratePlan;
+	}
+
+	//The plan to bill with, the flat baseRate one unless a plan was set
+	protected RatePlan effectiveRatePlan() {
+		return ratePlan != null ? ratePlan : RatePlan.flat(baseRate * RatingEngine.MICROS_PER_UNIT / 100);
+	}
+
 	public abstract double calculateBill(); //extension
+
+	//Whether the usage is data sessions rather than calls, decides which history BalancePipeline rates
+	protected boolean isDataMetered() {
+		return false;
+	}
+
+	//Where the usage of the subscriber is kept, null for extensions that only implement calculateBill
+	protected UsageSource usageSource() {
+		return null;
+	}
+
+	//Exact bill in micros, what calculateBill rounds to a double
+	//Without a usageSource it falls back to the double calculateBill, rounded to micros.
+	public long calculateBillMicros() {
+		UsageSource source = usageSource();
+		if (source == null) {
+			return Math.round(calculateBill() * RatingEngine.MICROS_PER_UNIT);
+		}
+		return RatingEngine.rate(source.sumAmounts(subscriberId), effectiveRatePlan());
+	}
+
+	//Bill for the period from the usage in source, e.g. a UsageArchive of a closed period
+	//The source has to hold this subscriber's kind of usage, calls for a phone and sessions for an ISP subscriber.
+	public double calculateBill(BillingPeriod period, UsageSource source) {
+		return RatingEngine.toUnits(calculateBillMicros(period, source));
+	}
+
+	public long calculateBillMicros(BillingPeriod period, UsageSource source) {
+		long usage = source.sumAmounts(subscriberId, period.fromEpochSecond(), period.toEpochSecond());
+		return RatingEngine.rate(usage, effectiveRatePlan());
+	}
     
 }
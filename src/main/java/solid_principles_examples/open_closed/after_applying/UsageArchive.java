@@ -0,0 +1,272 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+//Immutable file of the usage of a closed billing period, in the UsageBlock format
+//Layout: [magic][version][period from][period to], then per subscriber its blocks, each the compressed
+//records followed by the footer, then an index of [subscriber][end of its last block][block count] and
+//a trailer of [index offset][subscriber count][magic].
+//Open maps the file read-only and reads only the footers - totals, counts, min and max of whole blocks
+//come from them, and only blocks cut by a query window are decoded, straight from the mapping.
+//The archive is a UsageSource, not a store - re-bill a closed period with
+//subscriber.calculateBill(period, archive) while the histories keep their live stores.
+public final class UsageArchive implements UsageSource {
+
+    private static final int MAGIC = 0x55534152;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+    private static final int TRAILER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    private static final UsageBlock[] NO_BLOCKS = new UsageBlock[0];
+
+    private final long from;
+
+    private final long to;
+
+    private final long sizeInBytes;
+
+    private final Map<Long, Entry> subscribers;
+
+    private UsageArchive(long from, long to, long sizeInBytes, Map<Long, Entry> subscribers) {
+        this.from = from;
+        this.to = to;
+        this.sizeInBytes = sizeInBytes;
+        this.subscribers = subscribers;
+    }
+
+    //Writes the usage the subscribers have in the period, replacing the file only once it is complete
+    public static void write(Path file, UsageSource store, long[] subscriberIds, BillingPeriod period) throws IOException {
+        long from = period.fromEpochSecond();
+        long to = period.toEpochSecond();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(from).putLong(to).flip();
+            writeFully(channel, header);
+
+            ByteBuffer index = ByteBuffer.allocate(subscriberIds.length * INDEX_ENTRY_BYTES);
+            int written = 0;
+            for (long subscriberId : subscriberIds) {
+                UsageSnapshot snapshot = store.snapshot(subscriberId);
+                int count = snapshot.count(from, to);
+                if (count == 0) {
+                    continue;
+                }
+                long[] begins = new long[count];
+                long[] amounts = new long[count];
+                int[] position = new int[1];
+                snapshot.forEach(from, to, (begin, amount) -> {
+                    begins[position[0]] = begin;
+                    amounts[position[0]++] = amount;
+                });
+                UsageColumns.sortByBegin(begins, amounts);
+                UsageBlock[] blocks = UsageBlock.ofAll(begins, amounts, count);
+                for (UsageBlock block : blocks) {
+                    ByteBuffer buffer = ByteBuffer.allocate(block.sizeInBytes() + UsageBlock.FOOTER_BYTES);
+                    block.writeTo(buffer);
+                    writeFully(channel, buffer.flip());
+                }
+                index.putLong(subscriberId).putLong(channel.position()).putInt(blocks.length);
+                written++;
+            }
+            long indexOffset = channel.position();
+            writeFully(channel, index.flip());
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            trailer.putLong(indexOffset).putInt(written).putInt(MAGIC).flip();
+            writeFully(channel, trailer);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static UsageArchive open(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Archive " + file + " is larger than 2GB, archive fewer subscribers per file");
+        }
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("Archive " + file + " is truncated");
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int trailer = (int) size - TRAILER_BYTES;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(trailer + Long.BYTES + Integer.BYTES) != MAGIC) {
+            throw new IOException(file + " is not a usage archive");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Archive " + file + " has unsupported version " + buffer.getInt(Integer.BYTES));
+        }
+        int indexOffset = (int) buffer.getLong(trailer);
+        int subscriberCount = buffer.getInt(trailer + Long.BYTES);
+        Map<Long, Entry> subscribers = new HashMap<>(subscriberCount * 4 / 3 + 1);
+        for (int i = 0; i < subscriberCount; i++) {
+            int entry = indexOffset + i * INDEX_ENTRY_BYTES;
+            int end = (int) buffer.getLong(entry + Long.BYTES);
+            UsageBlock[] blocks = new UsageBlock[buffer.getInt(entry + 2 * Long.BYTES)];
+            //footers are read back to front, each one gives the start of its block
+            for (int block = blocks.length - 1; block >= 0; block--) {
+                blocks[block] = UsageBlock.readFrom(buffer, end);
+                end -= blocks[block].sizeInBytes() + UsageBlock.FOOTER_BYTES;
+            }
+            subscribers.put(buffer.getLong(entry), new Entry(blocks));
+        }
+        return new UsageArchive(buffer.getLong(2 * Integer.BYTES), buffer.getLong(2 * Integer.BYTES + Long.BYTES), size, subscribers);
+    }
+
+    @Override
+    public UsageSnapshot snapshot(Long subscriberId) {
+        Entry entry = subscribers.get(subscriberId);
+        return entry == null ? UsageColumns.EMPTY : entry;
+    }
+
+    //From the footers, nothing is decoded
+    @Override
+    public long sumAmounts(Long subscriberId) {
+        Entry entry = subscribers.get(subscriberId);
+        return entry == null ? 0 : entry.total;
+    }
+
+    @Override
+    public long sumAmounts(Long subscriberId, long from, long to) {
+        return snapshot(subscriberId).sumAmounts(from, to);
+    }
+
+    @Override
+    public int count(Long subscriberId) {
+        Entry entry = subscribers.get(subscriberId);
+        return entry == null ? 0 : entry.count;
+    }
+
+    //Smallest amount that began in the window, Long.MAX_VALUE when there is none
+    public long getMinAmount(Long subscriberId, long from, long to) {
+        long min = Long.MAX_VALUE;
+        for (UsageBlock block : blocks(subscriberId)) {
+            if (block.overlaps(from, to)) {
+                min = Math.min(min, block.minAmount(from, to));
+            }
+        }
+        return min;
+    }
+
+    //Largest amount that began in the window, Long.MIN_VALUE when there is none
+    public long getMaxAmount(Long subscriberId, long from, long to) {
+        long max = Long.MIN_VALUE;
+        for (UsageBlock block : blocks(subscriberId)) {
+            if (block.overlaps(from, to)) {
+                max = Math.max(max, block.maxAmount(from, to));
+            }
+        }
+        return max;
+    }
+
+    //The archived period, epoch seconds
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getRecordCount() {
+        long records = 0;
+        for (Entry entry : subscribers.values()) {
+            records += entry.count;
+        }
+        return records;
+    }
+
+    //Size of the file, footers and index included
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private UsageBlock[] blocks(Long subscriberId) {
+        Entry entry = subscribers.get(subscriberId);
+        return entry == null ? NO_BLOCKS : entry.blocks;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    //One subscriber's blocks in begin order, with the footer totals added up
+    private static final class Entry implements UsageSnapshot {
+
+        private final UsageBlock[] blocks;
+
+        private final int count;
+
+        private final long total;
+
+        private Entry(UsageBlock[] blocks) {
+            this.blocks = blocks;
+            int count = 0;
+            long total = 0;
+            for (UsageBlock block : blocks) {
+                count += block.count();
+                total += block.getTotal();
+            }
+            this.count = count;
+            this.total = total;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public long sumAmounts() {
+            return total;
+        }
+
+        @Override
+        public long sumAmounts(long from, long to) {
+            long sum = 0;
+            for (UsageBlock block : blocks) {
+                sum += block.sumAmounts(from, to);
+            }
+            return sum;
+        }
+
+        @Override
+        public int count(long from, long to) {
+            int count = 0;
+            for (UsageBlock block : blocks) {
+                count += block.count(from, to);
+            }
+            return count;
+        }
+
+        @Override
+        public void forEach(long from, long to, UsageConsumer consumer) {
+            for (UsageBlock block : blocks) {
+                block.forEach(from, to, consumer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//Immutable run of sealed usage records, sorted by begin
+//begins are varint deltas from the previous record (the first one from firstBegin) and amounts are
+//zigzag varints, so a record of a busy period usually takes 3 to 4 bytes instead of 16.
+//A footer of count, first and last begin, smallest and largest amount and the total is kept aside,
+//so aggregates over a window that covers the whole block never decode it.
+//Written as the records followed by the footer, see writeTo - the same bytes UsageArchive maps.
+final class UsageBlock {
+
+    //records per block, so a window cutting through a period decodes at most two blocks of it
+    static final int MAX_RECORDS = 1024;
+
+    //[count][data length][first begin][last begin][min amount][max amount][total]
+    static final int FOOTER_BYTES = 2 * Integer.BYTES + 5 * Long.BYTES;
+
+    //read with absolute gets only, so it is shared by every reader
+    private final ByteBuffer data;
+
+    private final int count;
+
+    private final long firstBegin;
+
+    private final long lastBegin;
+
+    private final long minAmount;
+
+    private final long maxAmount;
+
+    private final long total;
+
+    private UsageBlock(ByteBuffer data, int count, long firstBegin, long lastBegin, long minAmount, long maxAmount, long total) {
+        this.data = data;
+        this.count = count;
+        this.firstBegin = firstBegin;
+        this.lastBegin = lastBegin;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.total = total;
+    }
+
+    //The first count records of the columns, which have to be sorted by begin
+    static UsageBlock of(long[] begins, long[] amounts, int count) {
+        return of(begins, amounts, 0, count);
+    }
+
+    //The first count records of the columns, sorted by begin, in blocks of at most MAX_RECORDS
+    static UsageBlock[] ofAll(long[] begins, long[] amounts, int count) {
+        UsageBlock[] blocks = new UsageBlock[(count + MAX_RECORDS - 1) / MAX_RECORDS];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = of(begins, amounts, i * MAX_RECORDS, Math.min(count, (i + 1) * MAX_RECORDS));
+        }
+        return blocks;
+    }
+
+    private static UsageBlock of(long[] begins, long[] amounts, int from, int to) {
+        if (to <= from) {
+            throw new IllegalArgumentException("A block needs at least one record");
+        }
+        //a varint of a long takes at most 10 bytes
+        byte[] buffer = new byte[(to - from) * 20];
+        int position = 0;
+        long previous = begins[from];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            if (begins[i] < previous) {
+                throw new IllegalArgumentException("Records are not sorted by begin at " + i);
+            }
+            position = writeVarLong(buffer, position, begins[i] - previous);
+            position = writeVarLong(buffer, position, (amounts[i] << 1) ^ (amounts[i] >> 63));
+            previous = begins[i];
+            min = Math.min(min, amounts[i]);
+            max = Math.max(max, amounts[i]);
+            total += amounts[i];
+        }
+        return new UsageBlock(ByteBuffer.wrap(Arrays.copyOf(buffer, position)), to - from, begins[from], begins[to - 1], min, max, total);
+    }
+
+    //Reads the block whose footer ends at end, the data is a view of the buffer and is not copied
+    static UsageBlock readFrom(ByteBuffer buffer, int end) {
+        int footer = end - FOOTER_BYTES;
+        int count = buffer.getInt(footer);
+        int length = buffer.getInt(footer + Integer.BYTES);
+        int position = footer + 2 * Integer.BYTES;
+        if (count <= 0 || length < 0 || length > footer) {
+            throw new IllegalArgumentException("Corrupt usage block footer at " + footer);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(footer - length).limit(footer);
+        return new UsageBlock(data.slice(), count, buffer.getLong(position), buffer.getLong(position + Long.BYTES),
+                buffer.getLong(position + 2 * Long.BYTES), buffer.getLong(position + 3 * Long.BYTES), buffer.getLong(position + 4 * Long.BYTES));
+    }
+
+    //Puts the records and then the footer at the buffer's position
+    void writeTo(ByteBuffer buffer) {
+        buffer.put(data.duplicate().clear());
+        buffer.putInt(count).putInt(data.capacity());
+        buffer.putLong(firstBegin).putLong(lastBegin).putLong(minAmount).putLong(maxAmount).putLong(total);
+    }
+
+    int count() {
+        return count;
+    }
+
+    long getFirstBegin() {
+        return firstBegin;
+    }
+
+    long getLastBegin() {
+        return lastBegin;
+    }
+
+    long getMinAmount() {
+        return minAmount;
+    }
+
+    long getMaxAmount() {
+        return maxAmount;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    //Compressed size of the records, without the footer
+    int sizeInBytes() {
+        return data.capacity();
+    }
+
+    boolean overlaps(long from, long to) {
+        return firstBegin < to && lastBegin >= from;
+    }
+
+    boolean within(long from, long to) {
+        return firstBegin >= from && lastBegin < to;
+    }
+
+    //Records with from <= begin < to, in begin order
+    void forEach(long from, long to, UsageSnapshot.UsageConsumer consumer) {
+        if (!overlaps(from, to)) {
+            return;
+        }
+        int position = 0;
+        long begin = firstBegin;
+        long[] value = new long[1];
+        for (int i = 0; i < count; i++) {
+            position = readVarLong(data, position, value);
+            begin += value[0];
+            position = readVarLong(data, position, value);
+            if (begin >= to) {
+                return;
+            }
+            if (begin >= from) {
+                consumer.accept(begin, (value[0] >>> 1) ^ -(value[0] & 1));
+            }
+        }
+    }
+
+    long sumAmounts(long from, long to) {
+        if (within(from, to)) {
+            return total;
+        }
+        long[] sum = new long[1];
+        forEach(from, to, (begin, amount) -> sum[0] += amount);
+        return sum[0];
+    }
+
+    int count(long from, long to) {
+        if (within(from, to)) {
+            return count;
+        }
+        int[] matches = new int[1];
+        forEach(from, to, (begin, amount) -> matches[0]++);
+        return matches[0];
+    }
+
+    //Long.MAX_VALUE when no record began in the window
+    long minAmount(long from, long to) {
+        if (within(from, to)) {
+            return minAmount;
+        }
+        long[] min = {Long.MAX_VALUE};
+        forEach(from, to, (begin, amount) -> min[0] = Math.min(min[0], amount));
+        return min[0];
+    }
+
+    //Long.MIN_VALUE when no record began in the window
+    long maxAmount(long from, long to) {
+        if (within(from, to)) {
+            return maxAmount;
+        }
+        long[] max = {Long.MIN_VALUE};
+        forEach(from, to, (begin, amount) -> max[0] = Math.max(max[0], amount));
+        return max[0];
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    //Reads one varint into value[0] and returns the position after it
+    private static int readVarLong(ByteBuffer buffer, int position, long[] value) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        value[0] = result;
+        return position;
+    }
+
+}
@@ -0,0 +1,406 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.locks.StampedLock;
+
+//Usage records of one subscriber as two primitive columns instead of one object per record
+//begins holds the start as epoch seconds (UTC), amounts the call duration or the data used.
+//Columns are append-only and stored in chunks that never move: chunk 0 holds 16 records and every
+//later chunk doubles, so a subscriber with few records stays small and growing never copies.
+//Appends and seals of one subscriber take the write lock of a StampedLock. Readers take an optimistic
+//stamp, copy the references a snapshot needs and validate it, falling back to the read lock only when a
+//write got in between. Everything below the size a snapshot copied is immutable, so it reads on unlocked.
+//The count and total of the amounts are kept up to date on every append, so billing reads them in
+//O(1) instead of summing the columns. Set -Dusage.verifyTotals=true to recompute the total on every
+//read and fail when the two disagree.
+//seal moves the records of closed periods into compressed, immutable UsageBlocks of up to 1024 records.
+//The records left behind get fresh columns, so snapshots taken before a seal keep reading the old ones.
+public class UsageColumns {
+
+    static final boolean VERIFY_TOTALS = Boolean.getBoolean("usage.verifyTotals");
+
+    private static final int FIRST_CHUNK_SHIFT = 4;
+
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+
+    //enough chunks to hold Integer.MAX_VALUE records
+    private static final int MAX_CHUNKS = 32 - FIRST_CHUNK_SHIFT;
+
+    private static final UsageBlock[] NO_BLOCKS = new UsageBlock[0];
+
+    //Snapshot with no records
+    public static final Snapshot EMPTY = new UsageColumns().snapshot();
+
+    //Appends and seals take the write lock, readers validate an optimistic stamp instead
+    private final StampedLock lock = new StampedLock();
+
+    //records not sealed yet
+    private Active active = new Active();
+
+    //oldest seal first
+    private UsageBlock[] sealed = NO_BLOCKS;
+
+    private int sealedCount;
+
+    private long sealedTotal;
+
+    //sealed and active records, written after the record it publishes
+    private volatile int size;
+
+    public void add(long begin, long amount) {
+        long stamp = lock.writeLock();
+        try {
+            active.append(begin, amount);
+            size = size + 1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //Appends records from to to of the columns under one lock
+    public void addAll(long[] begins, long[] amounts, int from, int to) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = from; i < to; i++) {
+                active.append(begins[i], amounts[i]);
+            }
+            size = size + (to - from);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Consistent view of the records appended so far, later appends and seals are not visible through it
+    public Snapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        Snapshot snapshot = readSnapshot();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                snapshot = readSnapshot();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (VERIFY_TOTALS) {
+            snapshot.verify();
+        }
+        return snapshot;
+    }
+
+    private Snapshot readSnapshot() {
+        Active current = active;
+        return new Snapshot(sealed, sealedCount, current, current.size, current.ordered, sealedTotal + current.total);
+    }
+
+    //Running total, O(1) however long the history is
+    public long sumAmounts() {
+        return snapshot().sumAmounts();
+    }
+
+    //Sums the columns and sealed blocks again, what the running total is checked against
+    public long recomputeAmounts() {
+        return snapshot().recomputeAmounts();
+    }
+
+    //Moves every record that began before the given epoch second into a sealed block
+    //Returns the number of records sealed, records arriving late for a sealed period go to the next seal
+    //Records that arrived out of begin order, as a bulk import delivers them, are sorted as well - the ones
+    //left active included - so windows are binary searched again afterwards.
+    public int seal(long before) {
+        long stamp = lock.writeLock();
+        try {
+            Active current = active;
+            int count = 0;
+            for (int i = 0; i < current.size; i++) {
+                if (current.getBegin(i) < before) {
+                    count++;
+                }
+            }
+            if (count == 0 && current.ordered) {
+                return 0;
+            }
+            long[] begins = new long[count];
+            long[] amounts = new long[count];
+            long[] remainingBegins = new long[current.size - count];
+            long[] remainingAmounts = new long[current.size - count];
+            int sealedIndex = 0;
+            int remainingIndex = 0;
+            for (int i = 0; i < current.size; i++) {
+                long begin = current.getBegin(i);
+                if (begin < before) {
+                    begins[sealedIndex] = begin;
+                    amounts[sealedIndex++] = current.getAmount(i);
+                } else {
+                    remainingBegins[remainingIndex] = begin;
+                    remainingAmounts[remainingIndex++] = current.getAmount(i);
+                }
+            }
+            if (!current.ordered) {
+                sortByBegin(begins, amounts);
+                sortByBegin(remainingBegins, remainingAmounts);
+            }
+            Active remaining = new Active();
+            for (int i = 0; i < remainingBegins.length; i++) {
+                remaining.append(remainingBegins[i], remainingAmounts[i]);
+            }
+            if (count == 0) {
+                active = remaining;
+                return 0;
+            }
+            UsageBlock[] added = UsageBlock.ofAll(begins, amounts, count);
+            UsageBlock[] blocks = Arrays.copyOf(sealed, sealed.length + added.length);
+            for (int i = 0; i < added.length; i++) {
+                blocks[sealed.length + i] = added[i];
+                sealedTotal += added[i].getTotal();
+            }
+            sealed = blocks;
+            sealedCount += count;
+            active = remaining;
+            return count;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //Compressed bytes taken by sealed records
+    public long getSealedBytes() {
+        long bytes = 0;
+        for (UsageBlock block : snapshot().sealed) {
+            bytes += block.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    //Stable, seals are rare so boxing the order is fine
+    static void sortByBegin(long[] begins, long[] amounts) {
+        Integer[] order = new Integer[begins.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> begins[i]));
+        long[] sortedBegins = new long[begins.length];
+        long[] sortedAmounts = new long[amounts.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedBegins[i] = begins[order[i]];
+            sortedAmounts[i] = amounts[order[i]];
+        }
+        System.arraycopy(sortedBegins, 0, begins, 0, begins.length);
+        System.arraycopy(sortedAmounts, 0, amounts, 0, amounts.length);
+    }
+
+    //chunk 0 covers [0, 16), chunk c > 0 covers [16 << (c - 1), 16 << c)
+    private static int chunkOf(int index) {
+        return 32 - Integer.numberOfLeadingZeros(index >>> FIRST_CHUNK_SHIFT);
+    }
+
+    private static int chunkStart(int chunk) {
+        return chunk == 0 ? 0 : FIRST_CHUNK_SIZE << (chunk - 1);
+    }
+
+    private static int chunkSize(int chunk) {
+        return chunk == 0 ? FIRST_CHUNK_SIZE : FIRST_CHUNK_SIZE << (chunk - 1);
+    }
+
+    //Records keep whole seconds only
+    public static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    //The unsealed records in arrival order, guarded by the lock of the owning columns
+    private static final class Active {
+
+        private final long[][] begins = new long[MAX_CHUNKS][];
+
+        private final long[][] amounts = new long[MAX_CHUNKS][];
+
+        private int size;
+
+        private long total;
+
+        //true while every begin is at least the one before, so windows can be binary searched
+        private boolean ordered = true;
+
+        private void append(long begin, long amount) {
+            int index = size;
+            int chunk = chunkOf(index);
+            if (begins[chunk] == null) {
+                begins[chunk] = new long[chunkSize(chunk)];
+                amounts[chunk] = new long[chunkSize(chunk)];
+            }
+            if (index > 0 && begin < getBegin(index - 1)) {
+                ordered = false;
+            }
+            int offset = index - chunkStart(chunk);
+            begins[chunk][offset] = begin;
+            amounts[chunk][offset] = amount;
+            total += amount;
+            size = index + 1;
+        }
+
+        private long getBegin(int index) {
+            int chunk = chunkOf(index);
+            return begins[chunk][index - chunkStart(chunk)];
+        }
+
+        private long getAmount(int index) {
+            int chunk = chunkOf(index);
+            return amounts[chunk][index - chunkStart(chunk)];
+        }
+
+        //A plain loop per chunk over a long[] - no boxing and no pointer chasing
+        private long sumAmounts(int count) {
+            long sum = 0;
+            for (int chunk = 0; chunk < MAX_CHUNKS && count > chunkStart(chunk); chunk++) {
+                long[] values = amounts[chunk];
+                int length = Math.min(chunkSize(chunk), count - chunkStart(chunk));
+                for (int i = 0; i < length; i++) {
+                    sum += values[i];
+                }
+            }
+            return sum;
+        }
+
+        //First index below count whose begin is not before the given one, the records have to be ordered
+        private int lowerBound(int count, long begin) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getBegin(middle) < begin) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    //The records of a subscriber at one point in time, safe to read while ingestion continues
+    //Windows are half-open, from <= begin < to, in epoch seconds.
+    public static final class Snapshot implements UsageSnapshot {
+
+        private final UsageBlock[] sealed;
+
+        private final int sealedCount;
+
+        private final Active active;
+
+        private final int activeSize;
+
+        private final boolean ordered;
+
+        private final long total;
+
+        private Snapshot(UsageBlock[] sealed, int sealedCount, Active active, int activeSize, boolean ordered, long total) {
+            this.sealed = sealed;
+            this.sealedCount = sealedCount;
+            this.active = active;
+            this.activeSize = activeSize;
+            this.ordered = ordered;
+            this.total = total;
+        }
+
+        @Override
+        public int size() {
+            return sealedCount + activeSize;
+        }
+
+        @Override
+        public long sumAmounts() {
+            return total;
+        }
+
+        //Sealed records first, in begin order per seal, then the unsealed ones in arrival order
+        @Override
+        public void forEach(long from, long to, UsageConsumer consumer) {
+            for (UsageBlock block : sealed) {
+                block.forEach(from, to, consumer);
+            }
+            if (ordered) {
+                int end = active.lowerBound(activeSize, to);
+                for (int i = active.lowerBound(activeSize, from); i < end; i++) {
+                    consumer.accept(active.getBegin(i), active.getAmount(i));
+                }
+                return;
+            }
+            for (int i = 0; i < activeSize; i++) {
+                long begin = active.getBegin(i);
+                if (begin >= from && begin < to) {
+                    consumer.accept(begin, active.getAmount(i));
+                }
+            }
+        }
+
+        //Sealed blocks inside the window count in O(1), ordered records are binary searched
+        @Override
+        public long sumAmounts(long from, long to) {
+            long sum = 0;
+            for (UsageBlock block : sealed) {
+                sum += block.sumAmounts(from, to);
+            }
+            if (ordered) {
+                int end = active.lowerBound(activeSize, to);
+                for (int i = active.lowerBound(activeSize, from); i < end; i++) {
+                    sum += active.getAmount(i);
+                }
+                return sum;
+            }
+            for (int i = 0; i < activeSize; i++) {
+                long begin = active.getBegin(i);
+                if (begin >= from && begin < to) {
+                    sum += active.getAmount(i);
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        public int count(long from, long to) {
+            int count = 0;
+            for (UsageBlock block : sealed) {
+                count += block.count(from, to);
+            }
+            if (ordered) {
+                return count + active.lowerBound(activeSize, to) - active.lowerBound(activeSize, from);
+            }
+            for (int i = 0; i < activeSize; i++) {
+                long begin = active.getBegin(i);
+                if (begin >= from && begin < to) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private long recomputeAmounts() {
+            long sum = active.sumAmounts(activeSize);
+            for (UsageBlock block : sealed) {
+                long[] blockSum = new long[1];
+                block.forEach(Long.MIN_VALUE, Long.MAX_VALUE, (begin, amount) -> blockSum[0] += amount);
+                sum += blockSum[0];
+            }
+            return sum;
+        }
+
+        private void verify() {
+            long recomputed = recomputeAmounts();
+            if (recomputed != total) {
+                throw new IllegalStateException("Running total " + total + " of " + size() + " records does not match recomputed total " + recomputed);
+            }
+        }
+    }
+
+}
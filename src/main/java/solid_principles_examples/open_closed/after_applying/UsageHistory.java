@@ -0,0 +1,76 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Usage columns per subscriber, the storage behind CallHistory and InternetSessionHistory
+//Appends only contend with appends for the same subscriber, reads never block
+public class UsageHistory implements UsageStore {
+
+    private final Map<Long, UsageColumns> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(Long subscriberId, long begin, long amount) {
+        UsageColumns columns = subscribers.get(subscriberId);
+        if (columns == null) {
+            columns = subscribers.computeIfAbsent(subscriberId, id -> new UsageColumns());
+        }
+        columns.add(begin, amount);
+    }
+
+    //Consecutive records of one subscriber take one lookup and one lock
+    @Override
+    public void addAll(long[] subscriberIds, long[] begins, long[] amounts, int count) {
+        int from = 0;
+        while (from < count) {
+            long subscriberId = subscriberIds[from];
+            int to = from + 1;
+            while (to < count && subscriberIds[to] == subscriberId) {
+                to++;
+            }
+            UsageColumns columns = subscribers.get(subscriberId);
+            if (columns == null) {
+                columns = subscribers.computeIfAbsent(subscriberId, id -> new UsageColumns());
+            }
+            columns.addAll(begins, amounts, from, to);
+            from = to;
+        }
+    }
+
+    @Override
+    public UsageSnapshot snapshot(Long subscriberId) {
+        UsageColumns columns = subscribers.get(subscriberId);
+        return columns == null ? UsageColumns.EMPTY : columns.snapshot();
+    }
+
+    //Running total of the subscriber's amounts, O(1)
+    @Override
+    public long sumAmounts(Long subscriberId) {
+        UsageColumns columns = subscribers.get(subscriberId);
+        return columns == null ? 0 : columns.sumAmounts();
+    }
+
+    //Total of the amounts that began in [from, to), epoch seconds
+    @Override
+    public long sumAmounts(Long subscriberId, long from, long to) {
+        UsageColumns columns = subscribers.get(subscriberId);
+        return columns == null ? 0 : columns.snapshot().sumAmounts(from, to);
+    }
+
+    @Override
+    public int count(Long subscriberId) {
+        UsageColumns columns = subscribers.get(subscriberId);
+        return columns == null ? 0 : columns.size();
+    }
+
+    //Seals every subscriber's records that began before the given epoch second, returns how many were sealed
+    @Override
+    public int seal(long before) {
+        int sealed = 0;
+        for (UsageColumns columns : subscribers.values()) {
+            sealed += columns.seal(before);
+        }
+        return sealed;
+    }
+
+}
@@ -0,0 +1,10 @@
+package solid_principles_examples.open_closed.after_applying;
+
+//Told about every record added to CallHistory or InternetSessionHistory, on the thread that added it
+//Runs on the ingest path, so implementations should hand the record off rather than work on it.
+@FunctionalInterface
+public interface UsageListener {
+
+    void onUsage(long subscriberId, long beginEpochSecond, long amount);
+
+}
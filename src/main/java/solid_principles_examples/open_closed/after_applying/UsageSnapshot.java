@@ -0,0 +1,27 @@
+package solid_principles_examples.open_closed.after_applying;
+
+//Read-only view of one subscriber's usage records, consistent while ingestion continues
+//Windows are half-open, from <= begin < to, in epoch seconds.
+public interface UsageSnapshot {
+
+    int size();
+
+    long sumAmounts();
+
+    long sumAmounts(long from, long to);
+
+    int count(long from, long to);
+
+    void forEach(long from, long to, UsageConsumer consumer);
+
+    default void forEach(UsageConsumer consumer) {
+        forEach(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    //Called with the begin and the amount of each record
+    @FunctionalInterface
+    interface UsageConsumer {
+        void accept(long begin, long amount);
+    }
+
+}
@@ -0,0 +1,17 @@
+package solid_principles_examples.open_closed.after_applying;
+
+//Read side of usage, what billing needs - the live UsageStore of a history or a closed period's UsageArchive
+//Times are epoch seconds (UTC) and windows are half-open, from <= begin < to.
+public interface UsageSource {
+
+    //The subscriber's records at this point in time, later appends are not visible through it
+    UsageSnapshot snapshot(Long subscriberId);
+
+    //Running total of the subscriber's amounts
+    long sumAmounts(Long subscriberId);
+
+    long sumAmounts(Long subscriberId, long from, long to);
+
+    int count(Long subscriberId);
+
+}
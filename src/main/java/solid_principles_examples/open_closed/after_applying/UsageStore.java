@@ -0,0 +1,36 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+//Where CallHistory and InternetSessionHistory keep usage - the heap UsageHistory or the MappedUsageStore
+//Times are epoch seconds (UTC) and windows are half-open, from <= begin < to.
+public interface UsageStore extends UsageSource {
+
+    void add(Long subscriberId, long begin, long amount);
+
+    //Appends the first count records of the columns, for bulk loads
+    default void addAll(long[] subscriberIds, long[] begins, long[] amounts, int count) {
+        for (int i = 0; i < count; i++) {
+            add(subscriberIds[i], begins[i], amounts[i]);
+        }
+    }
+
+    //Compacts records that began before the given epoch second where the store supports it, returns how many
+    int seal(long before);
+
+    //A MappedUsageStore in the directory the system property names, the heap UsageHistory when it is not set
+    static UsageStore fromProperty(String directoryProperty) {
+        String directory = System.getProperty(directoryProperty);
+        if (directory == null) {
+            return new UsageHistory();
+        }
+        try {
+            return MappedUsageStore.open(Paths.get(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+//Runs the UserController pipeline - parse, validate, persist - on a bounded pool instead of the caller thread
+//At most maxInFlight requests are queued or running. Beyond that the BackpressurePolicy either rejects
+//the request or blocks the caller, so a slow (durable) persistence layer cannot pile up unbounded work.
+public class AsyncUserController implements AutoCloseable {
+
+    private final UserPersistenceService persistenceService = new UserPersistenceService();
+
+    private final UserValidator validator = new UserValidator();
+
+    private final ExecutorService executor;
+
+    private final Semaphore inFlight;
+
+    private final int maxInFlight;
+
+    private final BackpressurePolicy policy;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder interrupted = new LongAdder();
+
+    public AsyncUserController(int threads, int maxInFlight, BackpressurePolicy policy) {
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.policy = policy;
+        AtomicInteger threadNumber = new AtomicInteger();
+        //the semaphore bounds the queue, the executor itself never has to reject
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "user-controller-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //Create a new user, the future fails with an IOException cause for malformed JSON
+    //Under WAIT, a caller interrupted while blocked gets a future failed with an InterruptedException
+    //and keeps its interrupt flag; only REJECT turning a request away counts as a rejection.
+    public CompletableFuture<CreateUserResult> createUserAsync(String userJson) {
+        if (policy == BackpressurePolicy.REJECT) {
+            if (!inFlight.tryAcquire()) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(maxInFlight + " user requests already in flight"));
+            }
+        } else {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted.increment();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> createUser(userJson, submitted), executor)
+                    .whenComplete((result, failure) -> inFlight.release());
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    //Callers interrupted while waiting for a slot under WAIT
+    public long getInterruptedCount() {
+        return interrupted.sum();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private CreateUserResult createUser(String userJson, long submitted) {
+        long started = System.nanoTime();
+        User user;
+        try {
+            user = UserJsonReader.read(userJson);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        long parsed = System.nanoTime();
+
+        ValidationResult validationResult = validator.validate(user);
+        long validated = System.nanoTime();
+        if (!validationResult.isValid()) {
+            return new CreateUserResult(validationResult, started - submitted, parsed - started, validated - parsed, 0);
+        }
+
+        validator.normalize(user);
+        persistenceService.saveUser(user);
+        long persisted = System.nanoTime();
+        return new CreateUserResult(validationResult, started - submitted, parsed - started, validated - parsed, persisted - validated);
+    }
+
+}
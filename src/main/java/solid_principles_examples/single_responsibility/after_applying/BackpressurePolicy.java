@@ -0,0 +1,12 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+//What AsyncUserController does with a request when the in-flight limit is reached
+public enum BackpressurePolicy {
+
+    //fail the returned future at once with a RejectedExecutionException
+    REJECT,
+
+    //block the calling thread until a request finishes, an interrupt fails the future with an InterruptedException
+    WAIT
+
+}
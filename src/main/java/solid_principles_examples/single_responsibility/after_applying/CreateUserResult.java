@@ -0,0 +1,61 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+//Result of an asynchronous create, with how long each stage took
+public class CreateUserResult {
+
+    private final ValidationResult validationResult;
+
+    private final long queuedNanos;
+
+    private final long parseNanos;
+
+    private final long validateNanos;
+
+    private final long persistNanos;
+
+    CreateUserResult(ValidationResult validationResult, long queuedNanos, long parseNanos, long validateNanos, long persistNanos) {
+        this.validationResult = validationResult;
+        this.queuedNanos = queuedNanos;
+        this.parseNanos = parseNanos;
+        this.validateNanos = validateNanos;
+        this.persistNanos = persistNanos;
+    }
+
+    //SUCCESS or ERROR, same as UserController.createUser
+    public String getStatus() {
+        return validationResult.isValid() ? "SUCCESS" : "ERROR";
+    }
+
+    public ValidationResult getValidationResult() {
+        return validationResult;
+    }
+
+    /**
+     * @return time between the call and a worker picking the request up
+     */
+    public long getQueuedNanos() {
+        return queuedNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getValidateNanos() {
+        return validateNanos;
+    }
+
+    /**
+     * @return time spent saving, 0 for invalid users
+     */
+    public long getPersistNanos() {
+        return persistNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CreateUserResult [status=" + getStatus() + ", validation=" + validationResult + ", queuedNanos=" + queuedNanos
+                + ", parseNanos=" + parseNanos + ", validateNanos=" + validateNanos + ", persistNanos=" + persistNanos + "]";
+    }
+
+}
@@ -0,0 +1,15 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+//When a saved user is guaranteed to be on disk
+public enum DurabilityMode {
+
+    //fsync after every write, slowest but nothing acknowledged is ever lost
+    SYNC,
+
+    //writers wait for a shared fsync that covers every write made since the previous one
+    GROUP_COMMIT,
+
+    //writers return immediately, a background fsync runs every flush interval
+    ASYNC
+
+}
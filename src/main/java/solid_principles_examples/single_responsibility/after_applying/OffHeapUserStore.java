@@ -0,0 +1,246 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+//Keeps users outside the Java heap so millions of them do not weigh on the garbage collector
+//Users are appended in UserRecordCodec form (length-prefixed UTF-8) to direct ByteBuffer chunks.
+//An open-addressing table of name hash -> record address finds them again, and a User object
+//is only built when getUser asks for one. Replacing a user appends a new record, the old one
+//stays behind as dead bytes.
+public class OffHeapUserStore implements UserStorage {
+
+    private static final int DEFAULT_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final long EMPTY = -1;
+
+    private final int chunkBytes;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    //slot -> name hash, and slot -> (chunk index << 32 | offset in chunk)
+    private int[] hashes;
+
+    private long[] addresses;
+
+    private int size;
+
+    private long usedBytes;
+
+    private long deadBytes;
+
+    public OffHeapUserStore() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    public OffHeapUserStore(int chunkBytes) {
+        this.chunkBytes = chunkBytes;
+        hashes = new int[INITIAL_CAPACITY];
+        addresses = new long[INITIAL_CAPACITY];
+        Arrays.fill(addresses, EMPTY);
+    }
+
+    //One store for the whole process, like the static map behind Store
+    public static OffHeapUserStore shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private static class SharedHolder {
+        private static final OffHeapUserStore INSTANCE = new OffHeapUserStore();
+    }
+
+    @Override
+    public void store(User user) {
+        Objects.requireNonNull(user.getName(), "name");
+        byte[] record = UserRecordCodec.encode(user);
+        if (record.length > chunkBytes) {
+            throw new IllegalArgumentException("User record of " + record.length + " bytes is larger than a chunk");
+        }
+        byte[] name = UserRecordCodec.bytes(user.getName());
+        int hash = hash(user.getName());
+
+        long stamp = lock.writeLock();
+        try {
+            long address = append(record);
+            int slot = find(hash, name);
+            if (slot >= 0) {
+                deadBytes += UserRecordCodec.encodedLength(chunk(addresses[slot]), offset(addresses[slot]));
+                addresses[slot] = address;
+                return;
+            }
+            slot = -slot - 1;
+            hashes[slot] = hash;
+            addresses[slot] = address;
+            size++;
+            if (size * 4L > addresses.length * 3L) {
+                resize();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public User getUser(String name) {
+        if (name == null) {
+            return null;
+        }
+        byte[] key = UserRecordCodec.bytes(name);
+        int hash = hash(name);
+        long stamp = lock.readLock();
+        try {
+            int slot = find(hash, key);
+            if (slot < 0) {
+                return null;
+            }
+            return UserRecordCodec.decode(chunk(addresses[slot]), offset(addresses[slot]));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void storeAll(Collection<User> users) {
+        for (User user : users) {
+            store(user);
+        }
+    }
+
+    //Decodes every user, meant for snapshots rather than request paths
+    @Override
+    public Collection<User> getUsers() {
+        long stamp = lock.readLock();
+        try {
+            List<User> users = new ArrayList<>(size);
+            for (long address : addresses) {
+                if (address != EMPTY) {
+                    users.add(UserRecordCodec.decode(chunk(address), offset(address)));
+                }
+            }
+            return users;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Direct memory reserved for records
+    public long getArenaBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) chunks.size() * chunkBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Bytes of records written so far, live and dead
+    public long getUsedBytes() {
+        long stamp = lock.readLock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Bytes of records that were replaced by a newer version
+    public long getDeadBytes() {
+        long stamp = lock.readLock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Heap taken by the hash table
+    public long getIndexBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) addresses.length * (Integer.BYTES + Long.BYTES);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Slot of the name when present, otherwise -(insertion slot) - 1
+    private int find(int hash, byte[] name) {
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            long address = addresses[slot];
+            if (address == EMPTY) {
+                return -slot - 1;
+            }
+            if (hashes[slot] == hash && UserRecordCodec.nameEquals(chunk(address), offset(address), name)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        long[] oldAddresses = addresses;
+        hashes = new int[oldAddresses.length * 2];
+        addresses = new long[oldAddresses.length * 2];
+        Arrays.fill(addresses, EMPTY);
+        int mask = addresses.length - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] == EMPTY) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (addresses[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = oldHashes[i];
+            addresses[slot] = oldAddresses[i];
+        }
+    }
+
+    //Records never span chunks, a record that does not fit starts a new chunk
+    private long append(byte[] record) {
+        ByteBuffer current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (current == null || current.remaining() < record.length) {
+            current = ByteBuffer.allocateDirect(chunkBytes);
+            chunks.add(current);
+        }
+        int offset = current.position();
+        current.put(record);
+        usedBytes += record.length;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int hash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+}
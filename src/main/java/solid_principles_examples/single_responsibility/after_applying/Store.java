@@ -1,22 +1,164 @@
 package solid_principles_examples.single_responsibility.after_applying;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
 
 //Stores data in memory
-public class Store {
+//ConcurrentHashMap gives lock-free reads and per-bin writes, so request threads do not queue on one monitor
+//Secondary indexes on email (exact, case-insensitive) and address (prefix) are updated inside the
+//primary map's compute, so two writes to the same name can never leave the indexes out of step.
+//Stored users are treated as immutable - replace a user instead of calling its setters.
+public class Store implements UserStorage {
 
-    private static final Map<String, User> STORAGE = new HashMap<>();
+    private static final Map<String, User> STORAGE = new ConcurrentHashMap<>();
 
+    //lower-cased email -> names of the users with that email
+    private static final ConcurrentMap<String, Set<String>> EMAIL_INDEX = new ConcurrentHashMap<>();
+
+    //address -> names, sorted so every address with a given prefix is one contiguous range
+    private static final ConcurrentNavigableMap<String, Set<String>> ADDRESS_INDEX = new ConcurrentSkipListMap<>();
+
+    @Override
     public void store(User user) {
-        synchronized (STORAGE) {
-            STORAGE.put(user.getName(), user);
-        }
+        STORAGE.compute(user.getName(), (name, current) -> {
+            reindex(name, current, user);
+            return user;
+        });
     }
 
+    @Override
     public User getUser(String name) {
-        synchronized (STORAGE) {
-            return STORAGE.get(name);
+        //ConcurrentHashMap rejects null keys, no user has a null name
+        return name == null ? null : STORAGE.get(name);
+    }
+
+    //Stores many users in one call, later users win when names repeat
+    @Override
+    public void storeAll(Collection<User> users) {
+        for (User user : users) {
+            store(user);
         }
     }
-}
\ No newline at end of file
+
+    //Live, read-only view of every stored user
+    @Override
+    public Collection<User> getUsers() {
+        return Collections.unmodifiableCollection(STORAGE.values());
+    }
+
+    //Stores the user only if the name is free, returns the already stored user otherwise
+    public User storeIfAbsent(User user) {
+        User[] existing = new User[1];
+        STORAGE.compute(user.getName(), (name, current) -> {
+            if (current != null) {
+                existing[0] = current;
+                return current;
+            }
+            reindex(name, null, user);
+            return user;
+        });
+        return existing[0];
+    }
+
+    //Atomically upserts the user with the given name, the function sees the current user or null
+    //Returning null removes the user
+    public User compute(String name, BiFunction<String, User, User> remapping) {
+        return STORAGE.compute(name, (key, current) -> {
+            User updated = remapping.apply(key, current);
+            reindex(key, current, updated);
+            return updated;
+        });
+    }
+
+    //Users whose email equals the given one ignoring case - one hash lookup, none for a null email
+    public List<User> findByEmail(String email) {
+        String key = emailKey(email);
+        Set<String> names = key == null ? null : EMAIL_INDEX.get(key);
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<User> users = new ArrayList<>(names.size());
+        for (String name : names) {
+            User user = STORAGE.get(name);
+            //the index may briefly lead or trail the primary map, so re-check the stored value with the same key
+            if (user != null && key.equals(emailKey(user.getEmail()))) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    //Users whose address starts with the prefix - O(log n) to find the range plus one step per match
+    public List<User> findByAddressPrefix(String prefix) {
+        List<User> users = new ArrayList<>();
+        if (prefix == null) {
+            return users;
+        }
+        for (Map.Entry<String, Set<String>> entry : ADDRESS_INDEX.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            for (String name : entry.getValue()) {
+                User user = STORAGE.get(name);
+                if (user != null && user.getAddress() != null && user.getAddress().startsWith(prefix)) {
+                    users.add(user);
+                }
+            }
+        }
+        return users;
+    }
+
+    //Runs inside STORAGE.compute for the name, so updates for one user are serialized
+    private static void reindex(String name, User previous, User updated) {
+        String previousEmail = previous == null ? null : emailKey(previous.getEmail());
+        String updatedEmail = updated == null ? null : emailKey(updated.getEmail());
+        if (previousEmail != null && !previousEmail.equals(updatedEmail)) {
+            removeFromIndex(EMAIL_INDEX, previousEmail, name);
+        }
+        if (updatedEmail != null) {
+            addToIndex(EMAIL_INDEX, updatedEmail, name);
+        }
+
+        String previousAddress = previous == null ? null : previous.getAddress();
+        String updatedAddress = updated == null ? null : updated.getAddress();
+        if (previousAddress != null && !previousAddress.equals(updatedAddress)) {
+            removeFromIndex(ADDRESS_INDEX, previousAddress, name);
+        }
+        if (updatedAddress != null) {
+            addToIndex(ADDRESS_INDEX, updatedAddress, name);
+        }
+    }
+
+    private static void addToIndex(ConcurrentMap<String, Set<String>> index, String key, String name) {
+        index.compute(key, (k, names) -> {
+            if (names == null) {
+                names = ConcurrentHashMap.newKeySet(1);
+            }
+            names.add(name);
+            return names;
+        });
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, Set<String>> index, String key, String name) {
+        index.computeIfPresent(key, (k, names) -> {
+            names.remove(name);
+            return names.isEmpty() ? null : names;
+        });
+    }
+
+    //The only normalization of emails, both the index and the re-check go through it
+    private static String emailKey(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,56 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.Arrays;
+
+//Outcome of a batch create, one byte per record in input order
+//Each byte is the ordinal of the record's ValidationResult, so 0 means the user was saved
+public class UserBatchResult {
+
+    private static final ValidationResult[] RESULTS = ValidationResult.values();
+
+    private final byte[] statuses;
+
+    private final int size;
+
+    private final int successCount;
+
+    UserBatchResult(byte[] statuses, int size, int successCount) {
+        this.statuses = statuses;
+        this.size = size;
+        this.successCount = successCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getErrorCount() {
+        return size - successCount;
+    }
+
+    public boolean isSuccess(int index) {
+        return get(index).isValid();
+    }
+
+    public ValidationResult get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of " + size);
+        }
+        return RESULTS[statuses[index]];
+    }
+
+    //Copy of the raw status vector
+    public byte[] toByteArray() {
+        return Arrays.copyOf(statuses, size);
+    }
+
+    @Override
+    public String toString() {
+        return "UserBatchResult [size=" + size + ", success=" + successCount + ", error=" + getErrorCount() + "]";
+    }
+
+}
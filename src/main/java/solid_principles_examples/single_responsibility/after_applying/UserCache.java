@@ -0,0 +1,180 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+//Bounded read-through cache of users by name, with LRU eviction and an optional time to live
+//Names are spread over independent LRU segments, each behind its own lock, so lookups of different
+//users do not queue on one monitor the way they once did in Store.
+public class UserCache {
+
+    private final Segment[] segments;
+
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    //ttl of 0 keeps entries until they are evicted or invalidated
+    public UserCache(int maximumSize, long ttl, TimeUnit unit) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        int segmentCount = Integer.highestOneBit(Math.min(maximumSize, 4 * Runtime.getRuntime().availableProcessors()));
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            //spread the remainder so the segment capacities add up to maximumSize
+            segments[i] = new Segment(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+        ttlNanos = unit.toNanos(ttl);
+    }
+
+    //Cached user, or the loader's result which is then cached - null results are not cached
+    //A null name is never stored, so it is null without asking the loader
+    public User get(String name, Function<String, User> loader) {
+        if (name == null) {
+            return null;
+        }
+        Segment segment = segmentFor(name);
+        long invalidations;
+        synchronized (segment) {
+            Entry entry = segment.get(name);
+            if (entry != null && !entry.isExpired()) {
+                hits.increment();
+                return entry.user;
+            }
+            if (entry != null) {
+                segment.remove(name);
+            }
+            invalidations = segment.invalidations;
+        }
+        misses.increment();
+
+        //load outside the lock so a slow store only delays this name
+        User user = loader.apply(name);
+        if (user != null) {
+            synchronized (segment) {
+                //an invalidation during the load means the loaded user may already be stale
+                if (segment.invalidations == invalidations) {
+                    segment.put(name, new Entry(user, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return user;
+    }
+
+    public User getIfPresent(String name) {
+        if (name == null) {
+            return null;
+        }
+        Segment segment = segmentFor(name);
+        synchronized (segment) {
+            Entry entry = segment.get(name);
+            if (entry != null && !entry.isExpired()) {
+                hits.increment();
+                return entry.user;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void invalidate(String name) {
+        if (name == null) {
+            return;
+        }
+        Segment segment = segmentFor(name);
+        synchronized (segment) {
+            segment.remove(name);
+            segment.invalidations++;
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.invalidations++;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "UserCache [size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private Segment segmentFor(String name) {
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static final class Entry {
+
+        private final User user;
+
+        private final long expiresAt;
+
+        private Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return expiresAt != 0 && System.nanoTime() - expiresAt > 0;
+        }
+    }
+
+    //Access-ordered LinkedHashMap, so the eldest entry is the least recently used one
+    private final class Segment extends LinkedHashMap<String, Entry> {
+
+        private final int capacity;
+
+        //bumped on every invalidation, guarded by the segment itself
+        private long invalidations;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -1,20 +1,28 @@
 package solid_principles_examples.single_responsibility.after_applying;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.MappingIterator;
 
 //Handles incoming JSON requests that work on User
 public class UserController {
 
+    //Records parsed before a batch is validated and saved, bounds memory for huge imports
+    private static final int BATCH_SIZE = 16 * 1024;
+
     private UserPersistenceService persistenceService = new UserPersistenceService();
 
+    private UserValidator validator = new UserValidator();
+
     //Create a new user
     public String createUser(String userJson) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        User user = mapper.readValue(userJson, User.class);
+        User user = UserJsonReader.read(userJson);
 
-        UserValidator validator = new UserValidator();
         boolean valid = validator.validateUser(user);
 
         if (!valid) {
@@ -26,4 +34,60 @@ public class UserController {
         return "SUCCESS";
     }
 
-}
\ No newline at end of file
+    //Create users from a JSON array or NDJSON stream
+    //Records are validated in parallel and the valid ones saved with one bulk write per batch
+    public UserBatchResult createUsers(InputStream userJsonStream) throws IOException {
+        byte[] statuses = new byte[BATCH_SIZE];
+        int size = 0;
+        int successCount = 0;
+        List<User> batch = new ArrayList<>(BATCH_SIZE);
+        try (MappingIterator<User> users = UserJsonReader.readAll(userJsonStream)) {
+            while (users.hasNextValue()) {
+                batch.add(users.nextValue());
+                if (batch.size() == BATCH_SIZE) {
+                    statuses = ensureCapacity(statuses, size + batch.size());
+                    successCount += saveBatch(batch, statuses, size);
+                    size += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            statuses = ensureCapacity(statuses, size + batch.size());
+            successCount += saveBatch(batch, statuses, size);
+            size += batch.size();
+        }
+        return new UserBatchResult(statuses, size, successCount);
+    }
+
+    //Validates the batch in parallel, writes each status at offset + index and saves the valid users
+    private int saveBatch(List<User> batch, byte[] statuses, int offset) {
+        IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            User user = batch.get(i);
+            ValidationResult result = validator.validate(user);
+            if (result.isValid()) {
+                validator.normalize(user);
+            }
+            statuses[offset + i] = (byte) result.ordinal();
+        });
+
+        List<User> valid = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (statuses[offset + i] == ValidationResult.VALID.ordinal()) {
+                valid.add(batch.get(i));
+            }
+        }
+        if (!valid.isEmpty()) {
+            persistenceService.saveUsers(valid);
+        }
+        return valid.size();
+    }
+
+    private static byte[] ensureCapacity(byte[] statuses, int capacity) {
+        if (capacity <= statuses.length) {
+            return statuses;
+        }
+        return Arrays.copyOf(statuses, Math.max(capacity, statuses.length * 2));
+    }
+
+}
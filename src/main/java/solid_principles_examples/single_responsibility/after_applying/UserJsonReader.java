@@ -0,0 +1,40 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+//Reads User JSON documents with one shared, thread-safe reader
+public final class UserJsonReader {
+
+    //Building an ObjectMapper is expensive, so it is created once and shared by all callers
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    //ObjectReader is immutable and fetches the User deserializer eagerly, so the first request does not pay for it
+    private static final ObjectReader USER_READER = MAPPER.readerFor(User.class);
+
+    private UserJsonReader() {
+
+    }
+
+    //Reads a single user document
+    public static User read(String userJson) throws IOException {
+        return USER_READER.readValue(userJson);
+    }
+
+    //Streams users from a JSON array or from whitespace/newline separated documents (NDJSON)
+    //Bytes are decoded straight into User objects, no intermediate String per document
+    public static MappingIterator<User> readAll(InputStream userJsonStream) throws IOException {
+        return USER_READER.readValues(userJsonStream);
+    }
+
+    //Same as above for callers that already own a parser
+    public static MappingIterator<User> readAll(JsonParser parser) throws IOException {
+        return USER_READER.readValues(parser);
+    }
+
+}
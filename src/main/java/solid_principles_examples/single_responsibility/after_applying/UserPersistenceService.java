@@ -1,11 +1,164 @@
 package solid_principles_examples.single_responsibility.after_applying;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 //A separate class for handling persistence 
+//Users are always served from memory - the heap Store, or the OffHeapUserStore when -Duser.store.offHeap=true.
+//When a write-ahead log is configured every save is appended to it first, so memory is rebuilt from disk
+//on the next start. The no-arg constructor reads these settings from system properties, so UserController
+//needs no changes:
+//  -Duser.wal.dir=/var/lib/users  -Duser.wal.durability=SYNC|GROUP_COMMIT|ASYNC  -Duser.wal.compactionSeconds=300 (0 turns it off)
+//Lookups go through a bounded UserCache, every save invalidates the saved names:
+//  -Duser.cache.size=10000 (0 turns the cache off)  -Duser.cache.ttlSeconds=0 (0 means no expiry)
 public class UserPersistenceService {
 
-    private Store store = new Store();
+    private static final Logger LOGGER = Logger.getLogger(UserPersistenceService.class.getName());
+
+    public static final String OFF_HEAP_PROPERTY = "user.store.offHeap";
+
+    public static final String LOG_DIRECTORY_PROPERTY = "user.wal.dir";
+
+    public static final String DURABILITY_PROPERTY = "user.wal.durability";
+
+    public static final String COMPACTION_SECONDS_PROPERTY = "user.wal.compactionSeconds";
+
+    public static final String CACHE_SIZE_PROPERTY = "user.cache.size";
+
+    public static final String CACHE_TTL_SECONDS_PROPERTY = "user.cache.ttlSeconds";
+
+    //Shared like the storage behind it, so a save through one service invalidates lookups through all of them
+    private static final UserCache CACHE = createCache();
+
+    //Storage is shared by every service, so is the log behind it - one per directory
+    private static final Map<Path, UserWriteAheadLog> LOGS = new ConcurrentHashMap<>();
+
+    private UserStorage store = Boolean.getBoolean(OFF_HEAP_PROPERTY) ? OffHeapUserStore.shared() : new Store();
+
+    private UserWriteAheadLog log;
+
+    public UserPersistenceService() {
+        String directory = System.getProperty(LOG_DIRECTORY_PROPERTY);
+        if (directory != null) {
+            DurabilityMode durabilityMode = DurabilityMode.valueOf(System.getProperty(DURABILITY_PROPERTY, DurabilityMode.GROUP_COMMIT.name()));
+            long compactionSeconds = Long.getLong(COMPACTION_SECONDS_PROPERTY, 300);
+            log = openLog(Paths.get(directory), durabilityMode, compactionSeconds);
+        }
+    }
+
+    public UserPersistenceService(Path logDirectory, DurabilityMode durabilityMode, long compactionSeconds) {
+        log = openLog(logDirectory, durabilityMode, compactionSeconds);
+    }
 
     public void saveUser(User user) {
-        store.store(user);
+        try {
+            if (log == null) {
+                store.store(user);
+            } else {
+                log.append(user, () -> store.store(user));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            invalidate(user);
+        }
+    }
+
+    //Reads through the cache when it is enabled
+    public User getUser(String name) {
+        if (CACHE == null) {
+            return store.getUser(name);
+        }
+        return CACHE.get(name, store::getUser);
+    }
+
+    //The shared cache, null when it is turned off
+    public UserCache getCache() {
+        return CACHE;
+    }
+
+    //Saves many users with a single Store update and a single log write
+    public void saveUsers(Collection<User> users) {
+        try {
+            if (log == null) {
+                store.storeAll(users);
+            } else {
+                log.appendAll(users, () -> store.storeAll(users));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (User user : users) {
+                invalidate(user);
+            }
+        }
+    }
+
+    //Runs after the write, a lookup racing with it either sees the new user or does not cache the old one
+    private static void invalidate(User user) {
+        if (CACHE != null) {
+            CACHE.invalidate(user.getName());
+        }
+    }
+
+    private static UserCache createCache() {
+        int size = Integer.getInteger(CACHE_SIZE_PROPERTY, 10_000);
+        if (size <= 0) {
+            return null;
+        }
+        return new UserCache(size, Long.getLong(CACHE_TTL_SECONDS_PROPERTY, 0), TimeUnit.SECONDS);
+    }
+
+    //A directory already open in this process has to be asked for with the same settings
+    //Settings are checked before anything is opened, a log that is opened is either registered or closed again
+    private UserWriteAheadLog openLog(Path directory, DurabilityMode durabilityMode, long compactionSeconds) {
+        if (compactionSeconds < 0) {
+            throw new IllegalArgumentException("Compaction period must not be negative: " + compactionSeconds);
+        }
+        UserWriteAheadLog log = LOGS.computeIfAbsent(directory.toAbsolutePath().normalize(), path -> {
+            UserWriteAheadLog opened;
+            try {
+                opened = UserWriteAheadLog.open(path, durabilityMode, store::store);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                opened.startCompaction(store::getUsers, compactionSeconds, TimeUnit.SECONDS);
+            } catch (RuntimeException e) {
+                closeQuietly(opened, e);
+                throw e;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    //saves acknowledged under ASYNC since the last flush may be lost
+                    LOGGER.log(Level.WARNING, "Could not flush and close the user log in " + path, e);
+                }
+            }));
+            return opened;
+        });
+        if (log.getDurabilityMode() != durabilityMode || log.getCompactionPeriod(TimeUnit.SECONDS) != compactionSeconds) {
+            throw new IllegalArgumentException("User log " + directory + " is already open with " + log.getDurabilityMode()
+                    + " and compaction every " + log.getCompactionPeriod(TimeUnit.SECONDS) + "s, not " + durabilityMode
+                    + " and " + compactionSeconds + "s");
+        }
+        return log;
+    }
+
+    private static void closeQuietly(UserWriteAheadLog log, RuntimeException failure) {
+        try {
+            log.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
     }
 }
@@ -0,0 +1,111 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//Binary form of a User - name, email and address as length-prefixed UTF-8, -1 length for null
+final class UserRecordCodec {
+
+    private static final int NULL_LENGTH = -1;
+
+    private UserRecordCodec() {
+
+    }
+
+    static byte[] encode(User user) {
+        byte[] name = bytes(user.getName());
+        byte[] email = bytes(user.getEmail());
+        byte[] address = bytes(user.getAddress());
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES + length(name) + length(email) + length(address));
+        put(buffer, name);
+        put(buffer, email);
+        put(buffer, address);
+        return buffer.array();
+    }
+
+    //Reads one encoded user starting at the buffer's position and advances past it
+    static User decode(ByteBuffer buffer) {
+        String name = get(buffer);
+        String email = get(buffer);
+        String address = get(buffer);
+        return new User(name, email, address);
+    }
+
+    //Reads one encoded user at an absolute offset, the buffer's position is left alone
+    static User decode(ByteBuffer buffer, int offset) {
+        int position = offset;
+        String name = get(buffer, position);
+        position += fieldLength(buffer, position);
+        String email = get(buffer, position);
+        position += fieldLength(buffer, position);
+        String address = get(buffer, position);
+        return new User(name, email, address);
+    }
+
+    //Length of the whole encoded user at the offset
+    static int encodedLength(ByteBuffer buffer, int offset) {
+        int position = offset;
+        for (int field = 0; field < 3; field++) {
+            position += fieldLength(buffer, position);
+        }
+        return position - offset;
+    }
+
+    //Compares the encoded name at the offset with UTF-8 bytes without decoding it
+    static boolean nameEquals(ByteBuffer buffer, int offset, byte[] name) {
+        int length = buffer.getInt(offset);
+        if (length != name.length) {
+            return false;
+        }
+        int start = offset + Integer.BYTES;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static int fieldLength(ByteBuffer buffer, int offset) {
+        int length = buffer.getInt(offset);
+        return Integer.BYTES + (length == NULL_LENGTH ? 0 : length);
+    }
+
+    private static String get(ByteBuffer buffer, int offset) {
+        int length = buffer.getInt(offset);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(offset + Integer.BYTES, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static String get(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,18 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.Collection;
+
+//Where UserPersistenceService keeps users - the heap Store or the OffHeapUserStore
+public interface UserStorage {
+
+    void store(User user);
+
+    User getUser(String name);
+
+    //Stores many users in one call, later users win when names repeat
+    void storeAll(Collection<User> users);
+
+    //Every stored user
+    Collection<User> getUsers();
+
+}
@@ -1,53 +1,151 @@
 package solid_principles_examples.single_responsibility.after_applying;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 //A separate class for handling validation of User
+//Each field is checked in a single pass over its characters - no regex, no trimmed copies.
+//Accepts exactly what the previous regex based checks accepted:
+//  name  - trimmed value of [A-Za-z0-9]+
+//  email - trimmed value of ^[_A-Za-z0-9-\+]+(\.[_A-Za-z0-9-]+)*@[A-Za-z0-9-]+(\.[A-Za-z0-9]+)*(\.[A-Za-z]{2,})$
 public class UserValidator {
 
     public boolean validateUser(User user) {
-        return isValidUser(user);
+        boolean valid = validate(user).isValid();
+        if (valid) {
+            normalize(user);
+        }
+        return valid;
     }
 
-
-    //Validates the user object
-    private boolean isValidUser(User user) {
-        if (!isPresent(user.getName())) {
-            return false;
+    //Validates the user object without modifying it
+    public ValidationResult validate(User user) {
+        String name = user.getName();
+        if (name == null) {
+            return ValidationResult.NAME_MISSING;
+        }
+        int start = trimStart(name);
+        int end = trimEnd(name, start);
+        if (start == end) {
+            return ValidationResult.NAME_MISSING;
+        }
+        if (!isValidAlphaNumeric(name, start, end)) {
+            return ValidationResult.NAME_NOT_ALPHANUMERIC;
         }
-        user.setName(user.getName().trim());
 
-        if (!isValidAlphaNumeric(user.getName())) {
-            return false;
+        String email = user.getEmail();
+        if (email == null) {
+            return ValidationResult.EMAIL_MISSING;
         }
-        if (user.getEmail() == null || user.getEmail().trim().length() == 0) {
-            return false;
+        start = trimStart(email);
+        end = trimEnd(email, start);
+        if (start == end) {
+            return ValidationResult.EMAIL_MISSING;
         }
+        if (!isValidEmail(email, start, end)) {
+            return ValidationResult.EMAIL_MALFORMED;
+        }
+        return ValidationResult.VALID;
+    }
+
+    //Trims name and email of a validated user, trim() returns the same String when there is nothing to remove
+    public void normalize(User user) {
+        user.setName(user.getName().trim());
         user.setEmail(user.getEmail().trim());
-        if (!isValidEmail(user.getEmail())) {
-            return false;
+    }
+
+    //Same bounds as String.trim()
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) <= ' ') {
+            start++;
         }
-        return true;
+        return start;
     }
 
-    //Simply checks if value is null or empty..
-    private boolean isPresent(String value) {
-        return value != null && value.trim().length() > 0;
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
     }
 
     //check string for special characters
-    private boolean isValidAlphaNumeric(String value) {
-        Pattern pattern = Pattern.compile("[^A-Za-z0-9]");
-        Matcher matcher = pattern.matcher(value);
-        return !matcher.find();
+    private static boolean isValidAlphaNumeric(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isLetterOrDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     //check string for valid email address
-    private boolean isValidEmail(String value) {
-        Pattern pattern = Pattern.compile("^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$");
-        Matcher matcher = pattern.matcher(value);
-        return matcher.find();
+    private static boolean isValidEmail(String value, int start, int end) {
+        //The regex '$' also matched before one trailing line terminator that trim() keeps
+        char last = value.charAt(end - 1);
+        if (last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            end--;
+        }
+
+        //local part - dot separated non-empty segments, '+' only allowed in the first one
+        int i = start;
+        int segmentLength = 0;
+        boolean firstSegment = true;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '@') {
+                break;
+            }
+            if (c == '.') {
+                if (segmentLength == 0) {
+                    return false;
+                }
+                firstSegment = false;
+                segmentLength = 0;
+            } else if (isLetterOrDigit(c) || c == '_' || c == '-' || (c == '+' && firstSegment)) {
+                segmentLength++;
+            } else {
+                return false;
+            }
+        }
+        if (i == end || segmentLength == 0) {
+            return false;
+        }
+
+        //domain - first label may contain '-', later labels are alphanumeric and the last one is 2+ letters
+        int labels = 0;
+        segmentLength = 0;
+        boolean lettersOnly = true;
+        for (i++; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (segmentLength == 0) {
+                    return false;
+                }
+                labels++;
+                segmentLength = 0;
+                lettersOnly = true;
+            } else if (isLetter(c)) {
+                segmentLength++;
+            } else if (isDigit(c) || (c == '-' && labels == 0)) {
+                segmentLength++;
+                lettersOnly = false;
+            } else {
+                return false;
+            }
+        }
+        return labels > 0 && segmentLength >= 2 && lettersOnly;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || isDigit(c);
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
 }
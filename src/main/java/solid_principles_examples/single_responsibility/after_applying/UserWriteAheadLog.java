@@ -0,0 +1,444 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+//Append-only log of saved users so the in-memory Store survives a restart
+//Each record is [payload length][CRC32 of payload][UserRecordCodec payload].
+//On open the snapshot and then the log are replayed, a torn record at the tail is cut off.
+//Compaction writes the current users to a new snapshot and empties the log.
+//apply runs under the same lock that orders the writes, so memory sees saves in log order and a restart
+//rebuilds the same state. It runs before the fsync though: under GROUP_COMMIT a saved user is visible
+//while its writer still waits for the flush, and stays visible if that flush fails and append throws.
+public class UserWriteAheadLog implements Closeable {
+
+    static final String LOG_FILE = "users.log";
+
+    static final String SNAPSHOT_FILE = "users.snapshot";
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final long ASYNC_FLUSH_INTERVAL_MILLIS = 100;
+
+    //pause after a failed fsync, doubled on each further failure
+    private static final long MIN_RETRY_MILLIS = 10;
+
+    private static final long MAX_RETRY_MILLIS = 1000;
+
+    private final Path directory;
+
+    private final DurabilityMode durabilityMode;
+
+    private final FileChannel channel;
+
+    //Appends share the read lock, compaction takes the write lock so no append is half done while the log is swapped
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
+    //Orders writes to the channel
+    private final Object writeLock = new Object();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Condition flushRequested = flushLock.newCondition();
+
+    private final Condition flushCompleted = flushLock.newCondition();
+
+    private volatile long writtenSequence;
+
+    //guarded by flushLock
+    private long flushedSequence;
+
+    //guarded by flushLock, the last failed fsync and the records it was meant to cover
+    //A later successful fsync clears it - the log is not poisoned, only the waiters of that attempt fail.
+    private IOException flushFailure;
+
+    //guarded by flushLock
+    private long failedSequence;
+
+    private volatile boolean closed;
+
+    private final Thread flusher;
+
+    private ScheduledExecutorService compactor;
+
+    //guarded by this, 0 while there is no background compaction
+    private long compactionPeriodMillis;
+
+    private final LongAdder compactionFailures = new LongAdder();
+
+    private volatile IOException lastCompactionFailure;
+
+    private UserWriteAheadLog(Path directory, DurabilityMode durabilityMode, FileChannel channel) {
+        this.directory = directory;
+        this.durabilityMode = durabilityMode;
+        this.channel = channel;
+        if (durabilityMode == DurabilityMode.SYNC) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushLoop, "user-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    //Opens the log in the directory, replaying every stored user into the consumer before returning
+    public static UserWriteAheadLog open(Path directory, DurabilityMode durabilityMode, Consumer<User> replay) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            readRecords(snapshot, replay);
+        }
+        Path log = directory.resolve(LOG_FILE);
+        long validLength = Files.exists(log) ? readRecords(log, replay) : 0;
+
+        FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        channel.position(validLength);
+        return new UserWriteAheadLog(directory, durabilityMode, channel);
+    }
+
+    //Writes the user to the log, runs apply (usually the Store update) and returns once the durability mode is satisfied
+    //An IOException from the wait for the group commit comes after apply has run.
+    public void append(User user, Runnable apply) throws IOException {
+        append(frame(UserRecordCodec.encode(user)), apply);
+    }
+
+    //Same as append for many users - one write and at most one fsync for the whole batch
+    public void appendAll(Collection<User> users, Runnable apply) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(users.size());
+        int length = 0;
+        for (User user : users) {
+            byte[] payload = UserRecordCodec.encode(user);
+            payloads.add(payload);
+            length += HEADER_BYTES + payload.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(length);
+        for (byte[] payload : payloads) {
+            frame(payload, records);
+        }
+        records.flip();
+        append(records, apply);
+    }
+
+    private void append(ByteBuffer records, Runnable apply) throws IOException {
+        long sequence;
+        compactionLock.readLock().lock();
+        try {
+            synchronized (writeLock) {
+                ensureOpen();
+                write(records);
+                if (durabilityMode == DurabilityMode.SYNC) {
+                    channel.force(false);
+                }
+                sequence = ++writtenSequence;
+                apply.run();
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        if (durabilityMode == DurabilityMode.GROUP_COMMIT) {
+            awaitFlushed(sequence);
+        }
+    }
+
+    //Replaces the snapshot with the given users and empties the log
+    //The supplier is called while appends are paused, so it sees exactly what the log has recorded
+    public void compact(Supplier<Collection<User>> users) throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            ensureOpen();
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (User user : users.get()) {
+                    ByteBuffer record = frame(UserRecordCodec.encode(user));
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+
+            //Every write so far is in the snapshot now, so the log can start over
+            synchronized (writeLock) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(false);
+                markFlushed(writtenSequence);
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    //Compacts in the background at a fixed period, a period of 0 leaves compaction off
+    public synchronized void startCompaction(Supplier<Collection<User>> users, long period, TimeUnit unit) {
+        if (period < 0) {
+            throw new IllegalArgumentException("Compaction period must not be negative: " + period);
+        }
+        if (compactor != null || period == 0) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-wal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact(users);
+            } catch (IOException e) {
+                //the log keeps growing until a later run succeeds, nothing is lost
+                lastCompactionFailure = e;
+                compactionFailures.increment();
+            }
+        }, period, period, unit);
+        compactionPeriodMillis = unit.toMillis(period);
+    }
+
+    //Background compactions that failed, the log was left as it was
+    public long getCompactionFailureCount() {
+        return compactionFailures.sum();
+    }
+
+    //The cause of the last failed background compaction, null when none failed
+    public IOException getLastCompactionFailure() {
+        return lastCompactionFailure;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    //Period of the background compaction, 0 when startCompaction was not called
+    public synchronized long getCompactionPeriod(TimeUnit unit) {
+        return unit.convert(compactionPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Flushes everything written so far and releases the file
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (compactor != null) {
+                compactor.shutdown();
+            }
+        }
+        compactionLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            synchronized (writeLock) {
+                closed = true;
+                channel.force(false);
+                markFlushed(writtenSequence);
+                channel.close();
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    //Whether some record written so far is not known to be on disk yet
+    boolean hasUnflushedWrites() {
+        flushLock.lock();
+        try {
+            return flushedSequence < writtenSequence;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("User log is closed");
+        }
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private void awaitFlushed(long sequence) throws IOException {
+        flushLock.lock();
+        try {
+            flushRequested.signal();
+            while (flushedSequence < sequence) {
+                if (flushFailure != null && failedSequence >= sequence) {
+                    throw new IOException("User log flush failed", flushFailure);
+                }
+                flushCompleted.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void markFlushed(long sequence) {
+        flushLock.lock();
+        try {
+            if (sequence > flushedSequence) {
+                flushedSequence = sequence;
+            }
+            flushFailure = null;
+            flushCompleted.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    //One fsync covers every record written before it started - that is the group commit
+    //In ASYNC mode nobody waits, the flusher just wakes up every interval
+    private void flushLoop() {
+        long retryMillis = MIN_RETRY_MILLIS;
+        while (!closed) {
+            long target;
+            if (durabilityMode == DurabilityMode.ASYNC) {
+                if (!sleepQuietly(ASYNC_FLUSH_INTERVAL_MILLIS)) {
+                    return;
+                }
+                target = writtenSequence;
+            } else {
+                flushLock.lock();
+                try {
+                    while (!closed && flushedSequence >= writtenSequence) {
+                        flushRequested.await();
+                    }
+                    target = writtenSequence;
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    flushLock.unlock();
+                }
+            }
+            if (closed) {
+                return;
+            }
+            try {
+                channel.force(false);
+                markFlushed(target);
+                retryMillis = MIN_RETRY_MILLIS;
+            } catch (IOException e) {
+                flushLock.lock();
+                try {
+                    if (!closed) {
+                        flushFailure = e;
+                        failedSequence = target;
+                    }
+                    flushCompleted.signalAll();
+                } finally {
+                    flushLock.unlock();
+                }
+                //the failed records stay unflushed, without a pause the loop would retry at once
+                if (!sleepQuietly(retryMillis)) {
+                    return;
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private static boolean sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    //Makes the snapshot rename durable, not every platform allows opening a directory
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            //best effort
+        }
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame(payload, record);
+        record.flip();
+        return record;
+    }
+
+    private static void frame(byte[] payload, ByteBuffer target) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        target.putInt(payload.length);
+        target.putInt((int) crc.getValue());
+        target.put(payload);
+    }
+
+    //Replays complete records and returns the length of the valid prefix
+    private static long readRecords(Path file, Consumer<User> consumer) throws IOException {
+        long validLength = 0;
+        long fileLength = Files.size(file);
+        try (InputStream in = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = data.readInt();
+                    checksum = data.readInt();
+                    if (length < 0 || validLength + HEADER_BYTES + length > fileLength) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    data.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(UserRecordCodec.decode(ByteBuffer.wrap(payload)));
+                validLength += HEADER_BYTES + length;
+            }
+        }
+        return validLength;
+    }
+
+}
@@ -0,0 +1,49 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+//Outcome of validating a User - which field failed and why
+//Constants only, so validating never allocates a result
+public enum ValidationResult {
+
+    VALID(null, null),
+
+    NAME_MISSING("name", "is missing"),
+
+    NAME_NOT_ALPHANUMERIC("name", "must contain only letters and digits"),
+
+    EMAIL_MISSING("email", "is missing"),
+
+    EMAIL_MALFORMED("email", "is not a valid email address");
+
+    private final String field;
+
+    private final String reason;
+
+    ValidationResult(String field, String reason) {
+        this.field = field;
+        this.reason = reason;
+    }
+
+    /**
+     * @return the field that failed validation, null when valid
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return why the field failed validation, null when valid
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public boolean isValid() {
+        return this == VALID;
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "VALID" : field + " " + reason;
+    }
+
+}
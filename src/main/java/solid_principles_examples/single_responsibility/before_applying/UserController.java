@@ -5,17 +5,18 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 //Handles incoming JSON requests that work on User resource/entity
 public class UserController {
+	//Built once and shared, ObjectReader is thread-safe
+	private static final ObjectReader USER_READER = new ObjectMapper().readerFor(User.class);
 	//Store used by controller
     private Store store = new Store();
     
     //Create a new user
     public String createUser(String userJson) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        
-        User user = mapper.readValue(userJson, User.class);
+        User user = USER_READER.readValue(userJson);
 
         if(!isValidUser(user)) {
             return "ERROR";
@@ -0,0 +1,68 @@
+package pocs;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Rows/s and rows/s per core of ExcelExtractor over a directory of multi-sheet workbooks
+// Runs with 1, 2, 4 ... availableProcessors threads and prints a hash of the extracted values, which has
+// to be the same for every thread count.
+// Usage: ExcelExtractReport [workbooks] [sheets per workbook] [rows per sheet]
+public class ExcelExtractReport {
+
+    public static void main(String[] args) throws Exception {
+        int workbooks = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int sheets = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        Path directory = Files.createTempDirectory("excel-extract");
+        try {
+            for (int i = 0; i < workbooks; i++) {
+                write(directory.resolve("asns-" + i + ".xlsx").toFile(), sheets, rows);
+            }
+            int processors = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                try (ExcelExtractor extractor = new ExcelExtractor(threads)) {
+                    //first run warms up the parser
+                    extractor.extract(directory, new CollectingCellSink());
+                    CollectingCellSink sink = new CollectingCellSink();
+                    ExtractionResult result = extractor.extract(directory, sink);
+                    System.out.printf("threads=%d sheets=%d rows=%d time=%.2fs rows/s=%.0f rows/s per core=%.0f values hash=%08x%n",
+                            threads, result.getRows().size(), result.getTotalRows(), result.getElapsedNanos() / 1e9,
+                            result.getRowsPerSecond(), result.getRowsPerSecondPerCore(), sink.getAllValues().hashCode());
+                }
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void write(File file, int sheets, int rows) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(null, 100, true, true);
+             OutputStream out = new FileOutputStream(file)) {
+            for (int s = 0; s < sheets; s++) {
+                Sheet sheet = workbook.createSheet("ASN " + s);
+                for (int i = 0; i < rows; i++) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(0).setCellValue(String.format("ASN%s-%d-%08d", file.getName(), s, i));
+                    row.createCell(1).setCellValue(i);
+                }
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package pocs;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Time and peak heap of ReadWriteColumnFromExcel reading one ASN column, DOM against streaming
+// Files of 10k, 100k and 1M rows are written once with shared strings, the way Excel saves them,
+// and every read runs in its own JVM so one mode's heap cannot skew the other.
+// The cache mode reads a projection of mixed cells and errors without ExcelColumnCache, then through it
+// twice - a miss and a hit - and checks that all three produce the same rows and errors.
+// Usage: ExcelReadReport [max heap, default 3g]
+public class ExcelReadReport {
+
+    private static final int[] ROWS = {10_000, 100_000, 1_000_000};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("dom") || args[0].equals("streaming"))) {
+            read(args[0].equals("dom"), new File(args[1]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("cache")) {
+            roundTrip(new File(args[1]));
+            return;
+        }
+        String maxHeap = args.length > 0 ? args[0] : "3g";
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Path directory = Files.createTempDirectory("excel-report");
+        try {
+            for (int rows : ROWS) {
+                File file = directory.resolve("asns-" + rows + ".xlsx").toFile();
+                write(file, rows);
+                for (String mode : new String[]{"dom", "streaming"}) {
+                    new ProcessBuilder(java, "-Xmx" + maxHeap, "-cp", System.getProperty("java.class.path"),
+                            ExcelReadReport.class.getName(), mode, file.getPath())
+                            .inheritIO().start().waitFor();
+                }
+                Files.delete(file.toPath());
+
+                File mixed = directory.resolve("mixed-" + rows + ".xlsx").toFile();
+                writeMixed(mixed, rows);
+                new ProcessBuilder(java, "-Xmx" + maxHeap, "-cp", System.getProperty("java.class.path"),
+                        ExcelReadReport.class.getName(), "cache", mixed.getPath())
+                        .inheritIO().start().waitFor();
+                Files.delete(mixed.toPath());
+            }
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    private static void read(boolean dom, File file) throws IOException {
+        long[] cells = new long[2];
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = dom ? ReadWriteColumnFromExcel.readColumn(file, value -> {
+                cells[0]++;
+                cells[1] += value.length();
+            }) : ReadWriteColumnFromExcel.readColumnStreaming(file, value -> {
+                cells[0]++;
+                cells[1] += value.length();
+            });
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-9s %s out of memory after %.1fs%n", dom ? "dom" : "streaming", file.getName(),
+                    (System.nanoTime() - start) / 1e9);
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%-9s %-16s %9.2f MB rows=%d cells=%d time=%.2fs peak heap=%dMB%n", dom ? "dom" : "streaming",
+                file.getName(), file.length() / 1e6, rows, cells[0], elapsed / 1e9, peak >> 20);
+    }
+
+    private static void roundTrip(File file) throws IOException {
+        ColumnProjection projection = ColumnProjection.columns(0, 1, 2);
+        List<String> uncached = new ArrayList<>();
+        long start = System.nanoTime();
+        StreamingExcelReader.readFirstSheet(file, projection, recording(uncached));
+        long uncachedNanos = System.nanoTime() - start;
+
+        Path directory = Files.createTempDirectory("excel-cache");
+        try {
+            ExcelColumnCache cache = new ExcelColumnCache(directory, 1L << 30);
+            List<String> miss = new ArrayList<>();
+            start = System.nanoTime();
+            cache.readFirstSheet(file.toPath(), projection, recording(miss));
+            long missNanos = System.nanoTime() - start;
+            List<String> hit = new ArrayList<>();
+            start = System.nanoTime();
+            cache.readFirstSheet(file.toPath(), projection, recording(hit));
+            long hitNanos = System.nanoTime() - start;
+            boolean same = uncached.equals(miss) && uncached.equals(hit) && cache.getHitCount() == 1 && cache.getMissCount() == 1;
+            System.out.printf("cache     %-16s events=%d uncached=%.2fs miss=%.2fs hit=%.2fs %s%n", file.getName(), uncached.size(),
+                    uncachedNanos / 1e9, missNanos / 1e9, hitNanos / 1e9, same ? "same rows and errors" : "MISMATCH " + cache);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path cached : (Iterable<Path>) files::iterator) {
+                    Files.delete(cached);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // Every row and error as a line, in the order the handler saw them
+    private static RowHandler recording(List<String> events) {
+        return new RowHandler() {
+            @Override
+            public void row(ProjectedRow row) {
+                StringBuilder line = new StringBuilder("row ").append(row.getRowNumber());
+                for (int slot = 0; slot < row.size(); slot++) {
+                    line.append('\t').append(row.getKind(slot)).append(' ').append(row.getText(slot));
+                }
+                events.add(line.toString());
+                // a failing handler is reported by the reader and again by the replay, never from the cache file
+                if (row.getRowNumber() % 777 == 0) {
+                    throw new IllegalStateException("Rejected row " + row.getRowNumber());
+                }
+            }
+
+            @Override
+            public void error(RowError error) {
+                events.add("error " + error.getRow() + " " + error.getColumn() + " " + error.getMessage());
+            }
+        };
+    }
+
+    // Header, then an ASN, a number or boolean or blank, and a date or an error cell per row
+    private static void writeMixed(File file, int rows) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(null, 100, true, true);
+             OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("ASN");
+            CellStyle date = workbook.createCellStyle();
+            date.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("ASN");
+            header.createCell(1).setCellValue("Quantity");
+            header.createCell(2).setCellValue("Shipped");
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(String.format("ASN%010d", i));
+                if (i % 97 == 0) {
+                    row.createCell(1).setCellValue(i % 2 == 0);
+                } else if (i % 89 != 0) {
+                    row.createCell(1).setCellValue(i * 0.25);
+                }
+                Cell shipped = row.createCell(2);
+                if (i % 1000 == 0) {
+                    shipped.setCellErrorValue(FormulaError.DIV0.getCode());
+                } else {
+                    shipped.setCellValue(LocalDateTime.of(2022, 1, 1, 0, 0).plusMinutes(i));
+                    shipped.setCellStyle(date);
+                }
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    private static void write(File file, int rows) throws IOException {
+        // keeps 100 rows in memory, the rest go to a temporary file
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(null, 100, true, true);
+             OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("ASN");
+            for (int i = 0; i < rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(String.format("ASN%010d", i));
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+}
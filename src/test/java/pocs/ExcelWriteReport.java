@@ -0,0 +1,103 @@
+package pocs;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Elapsed time and peak heap of writing a 5 column report with StreamingExcelWriter
+// "gzip" and "plain" are the SXSSF writer with and without compressed temporary files, "xssf" builds the
+// whole workbook in memory the way a plain XSSFWorkbook does. Every mode runs in its own JVM.
+// Usage: ExcelWriteReport [rows, default 1000000] [max heap, default 3g]
+public class ExcelWriteReport {
+
+    private static final List<String> HEADER = Arrays.asList("ASN", "Quantity", "Amount", "Shipped", "Delivered");
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && Arrays.asList("gzip", "plain", "xssf").contains(args[0])) {
+            write(args[0], Integer.parseInt(args[1]));
+            return;
+        }
+        String rows = args.length > 0 ? args[0] : "1000000";
+        String maxHeap = args.length > 1 ? args[1] : "3g";
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String mode : new String[]{"gzip", "plain", "xssf"}) {
+            new ProcessBuilder(java, "-Xmx" + maxHeap, "-cp", System.getProperty("java.class.path"),
+                    ExcelWriteReport.class.getName(), mode, rows)
+                    .inheritIO().start().waitFor();
+        }
+    }
+
+    private static void write(String mode, int rows) throws IOException {
+        File file = Files.createTempFile("report", ".xlsx").toFile();
+        long start = System.nanoTime();
+        try {
+            if (mode.equals("xssf")) {
+                writeInMemory(file, rows);
+            } else {
+                new StreamingExcelWriter(StreamingExcelWriter.DEFAULT_ROW_WINDOW, mode.equals("gzip"))
+                        .setColumnFormat(2, "#,##0.00")
+                        .write(file, "Shipments", HEADER, rows(rows));
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-6s rows=%d time=%.2fs peak heap=%dMB file=%.1fMB%n", mode, rows, elapsed / 1e9,
+                    peakHeap() >> 20, file.length() / 1e6);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-6s rows=%d out of memory after %.1fs%n", mode, rows, (System.nanoTime() - start) / 1e9);
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    private static Stream<Object[]> rows(int rows) {
+        return IntStream.range(0, rows).mapToObj(i -> new Object[]{
+                String.format("ASN%010d", i), i % 500, i * 0.25, START.plusMinutes(i), i % 3 == 0});
+    }
+
+    private static void writeInMemory(File file, int rows) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Shipments");
+            Row header = sheet.createRow(0);
+            for (int column = 0; column < HEADER.size(); column++) {
+                header.createCell(column).setCellValue(HEADER.get(column));
+            }
+            int[] rowNumber = {1};
+            rows(rows).forEach(values -> {
+                Row row = sheet.createRow(rowNumber[0]++);
+                row.createCell(0).setCellValue((String) values[0]);
+                row.createCell(1).setCellValue((Integer) values[1]);
+                row.createCell(2).setCellValue((Double) values[2]);
+                row.createCell(3).setCellValue((LocalDateTime) values[3]);
+                row.createCell(4).setCellValue((Boolean) values[4]);
+            });
+            workbook.write(out);
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
@@ -0,0 +1,57 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//Open-loop session load through InternetSessionHistory with a BalancePipeline attached - records go in at
+//a fixed rate whether or not the rater keeps up, so falling behind shows up as latency.
+//Usage: BalancePipelineReport [events/s] [seconds] [subscribers]
+public class BalancePipelineReport {
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int subscribers = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        try (BalancePipeline pipeline = new BalancePipeline()) {
+            for (int i = 0; i < subscribers; i++) {
+                ISPSubscriber subscriber = new ISPSubscriber();
+                subscriber.setSubscriberId((long) i);
+                subscriber.setBaseRate(2);
+                //about the usage of the run, so most subscribers cross both thresholds
+                subscriber.setFreeUsage((long) rate * seconds / subscribers * 50);
+                pipeline.register(subscriber);
+            }
+
+            int events = rate * seconds;
+            long begin = UsageColumns.toEpochSecond(LocalDateTime.now());
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                long wait = start + i * intervalNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                InternetSessionHistory.addSession((long) random.nextInt(subscribers), begin + i / rate, random.nextInt(100));
+            }
+            while (pipeline.getProcessedCount() < events) {
+                Thread.sleep(1);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int thresholdEvents = 0;
+            while (pipeline.pollEvent() != null) {
+                thresholdEvents++;
+            }
+            System.out.printf("offered %d events/s for %ds over %d subscribers, rated %.0f events/s, %d threshold events%n",
+                    rate, seconds, subscribers, events / (elapsed / 1e9), thresholdEvents);
+            System.out.printf("ingest to balance latency us p50<=%.1f p99<=%.1f p99.9<=%.1f max<=%.1f%n",
+                    pipeline.getLatencyPercentileNanos(0.5) / 1e3, pipeline.getLatencyPercentileNanos(0.99) / 1e3,
+                    pipeline.getLatencyPercentileNanos(0.999) / 1e3, pipeline.getLatencyPercentileNanos(1.0) / 1e3);
+        }
+    }
+
+}
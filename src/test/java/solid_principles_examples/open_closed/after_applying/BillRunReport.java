@@ -0,0 +1,47 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Subscribers billed per second by BillRun for 1, 2, 4 ... availableProcessors workers
+//Usage: BillRunReport [subscribers] [calls per subscriber]
+public class BillRunReport {
+
+    private static final int DEFAULT_SUBSCRIBERS = 1_000_000;
+
+    private static final int DEFAULT_CALLS = 20;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SUBSCRIBERS;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CALLS;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Subscriber> subscribers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Subscriber subscriber = i % 2 == 0 ? new PhoneSubscriber() : new ISPSubscriber();
+            subscriber.setSubscriberId((long) i);
+            subscriber.setBaseRate(1 + random.nextInt(10));
+            subscribers.add(subscriber);
+            for (int j = 0; j < calls; j++) {
+                if (i % 2 == 0) {
+                    CallHistory.addSession((long) i, 1_640_995_200L + j * 60, random.nextInt(3_600));
+                } else {
+                    InternetSessionHistory.addSession((long) i, 1_640_995_200L + j * 60, random.nextInt(1_000_000));
+                }
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            BillRun run = new BillRun(pool, BillRun.DEFAULT_PARTITION_SIZE);
+            //first run warms up the JIT
+            run.run(subscribers);
+            BillRunResult result = run.run(subscribers);
+            System.out.printf("threads=%d subscribers=%d subscribers/s=%.0f%n", threads, result.getBilledCount(), result.getSubscribersPerSecond());
+            pool.shutdown();
+        }
+    }
+
+}
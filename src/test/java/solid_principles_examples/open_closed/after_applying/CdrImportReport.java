@@ -0,0 +1,47 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Records per second of CdrImporter on a generated CSV file, per core as well as in total
+//The first import warms up the JIT, the second one is reported.
+//Usage: CdrImportReport [records] [subscribers]
+public class CdrImportReport {
+
+    private static final int DEFAULT_RECORDS = 10_000_000;
+
+    private static final int DEFAULT_SUBSCRIBERS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECORDS;
+        int subscribers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SUBSCRIBERS;
+        Path file = Files.createTempFile("cdr", ".csv");
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            LocalDateTime start = LocalDateTime.of(2022, 1, 1, 0, 0);
+            DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write("subscriberId,begin,duration\n");
+                for (int i = 0; i < records; i++) {
+                    writer.write(random.nextInt(subscribers) + "," + format.format(start.plusSeconds(i)) + "," + random.nextInt(3_600) + "\n");
+                }
+            }
+            int processors = Runtime.getRuntime().availableProcessors();
+            for (int run = 0; run < 2; run++) {
+                CallHistory.useStore(new UsageHistory());
+                CdrImportResult result = new CdrImporter(CdrImporter.Format.CSV, CdrImporter.Target.CALLS).importFile(file);
+                if (run == 1) {
+                    System.out.printf("file=%dMB records=%d records/s=%.0f records/s per core=%.0f%n", Files.size(file) >> 20,
+                            result.getRecords(), result.getRecordsPerSecond(), result.getRecordsPerSecond() / processors);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
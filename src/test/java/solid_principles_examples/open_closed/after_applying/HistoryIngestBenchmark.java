@@ -0,0 +1,119 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Call ingest rate of UsageHistory against the previous class-synchronized map of call lists
+//main() repeats the run for 1, 2, 4 ... availableProcessors producer threads to show how each scales
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryIngestBenchmark {
+
+    private static final int SUBSCRIBERS = 100_000;
+
+    private static final long BEGIN = 1_640_995_200L;
+
+    @Param({"synchronized", "concurrent"})
+    private String implementation;
+
+    private SynchronizedHistory synchronizedHistory;
+
+    private UsageHistory history;
+
+    private Long[] subscriberIds;
+
+    //CallHistory before ingestion stopped taking the class monitor
+    static class SynchronizedHistory {
+
+        private final Map<Long, List<CallHistory.Call>> calls = new HashMap<>();
+
+        synchronized void addSession(Long subscriberId, long begin, long duration) {
+            calls.computeIfAbsent(subscriberId, id -> new LinkedList<>())
+                    .add(new CallHistory.Call(subscriberId, UsageColumns.toLocalDateTime(begin), duration));
+        }
+
+        synchronized long getTotalDuration(Long subscriberId) {
+            long total = 0;
+            for (CallHistory.Call call : calls.getOrDefault(subscriberId, new LinkedList<>())) {
+                total += call.getDuration();
+            }
+            return total;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        subscriberIds = new Long[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscriberIds[i] = (long) i;
+        }
+    }
+
+    //Start every iteration empty so memory does not grow across the whole run
+    @Setup(Level.Iteration)
+    public void reset() {
+        synchronizedHistory = new SynchronizedHistory();
+        history = new UsageHistory();
+    }
+
+    @Benchmark
+    public void ingest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long subscriberId = subscriberIds[random.nextInt(SUBSCRIBERS)];
+        long begin = BEGIN + random.nextInt(86_400);
+        long duration = random.nextInt(3_600);
+        if ("concurrent".equals(implementation)) {
+            history.add(subscriberId, begin, duration);
+        } else {
+            synchronizedHistory.addSession(subscriberId, begin, duration);
+        }
+    }
+
+    //99% ingest, 1% billing reads of one subscriber while ingestion continues
+    @Benchmark
+    public long ingestWhileBilling() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) == 0) {
+            Long subscriberId = subscriberIds[random.nextInt(SUBSCRIBERS)];
+            return "concurrent".equals(implementation) ? history.sumAmounts(subscriberId)
+                    : synchronizedHistory.getTotalDuration(subscriberId);
+        }
+        ingest();
+        return 0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(HistoryIngestBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+}
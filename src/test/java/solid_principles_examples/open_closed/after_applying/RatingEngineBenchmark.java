@@ -0,0 +1,73 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Rating a column of usages one call at a time against the column loop of rateAll
+//Run with -jvmArgsAppend -XX:-UseSuperWord to see what the auto-vectorization is worth.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RatingEngineBenchmark {
+
+    @Param({"1024", "1048576"})
+    private int subscribers;
+
+    private RatePlan plan;
+
+    private long[] usages;
+
+    private long[] charges;
+
+    @Setup
+    public void setUp() {
+        plan = new RatePlan(1_000, new long[]{0, 600, 3_600}, new long[]{100_000, 50_000, 12_345});
+        Random random = new Random(42);
+        usages = new long[subscribers];
+        charges = new long[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            usages[i] = random.nextInt(20_000);
+        }
+    }
+
+    @Benchmark
+    public long perSubscriber() {
+        long total = 0;
+        for (int i = 0; i < subscribers; i++) {
+            charges[i] = RatingEngine.rate(usages[i], plan);
+            total += charges[i];
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long column() {
+        RatingEngine.rateAll(usages, charges, subscribers, plan);
+        return RatingEngine.sum(charges, subscribers);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RatingEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,84 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+//Golden file test - rating-golden.csv pins the charge in micros of every plan below for chosen usages,
+//most of them on or next to a tier boundary or the end of the free allowance
+class RatingEngineTest {
+
+    private static final Map<String, RatePlan> PLANS = new LinkedHashMap<>();
+
+    static {
+        RatePlan tiered = new RatePlan(0, new long[]{0, 600, 3_600}, new long[]{100_000, 50_000, 12_345});
+        PLANS.put("flat", RatePlan.flat(70_000));
+        PLANS.put("tiered", tiered);
+        PLANS.put("tieredFree", tiered.withFreeAllowance(1_000));
+        PLANS.put("isp", new RatePlan(5_000_000, new long[]{0, 10_000_000}, new long[]{3, 1}));
+    }
+
+    @Test
+    void rateMatchesGoldenFile() throws IOException {
+        for (String[] row : goldenRows()) {
+            long usage = Long.parseLong(row[1]);
+            assertEquals(Long.parseLong(row[2]), RatingEngine.rate(usage, PLANS.get(row[0])), row[0] + " " + usage);
+        }
+    }
+
+    //The column loop must give the same charges, and their sum must be exact
+    @Test
+    void rateAllMatchesGoldenFile() throws IOException {
+        for (Map.Entry<String, RatePlan> plan : PLANS.entrySet()) {
+            List<long[]> rows = new ArrayList<>();
+            for (String[] row : goldenRows()) {
+                if (row[0].equals(plan.getKey())) {
+                    rows.add(new long[]{Long.parseLong(row[1]), Long.parseLong(row[2])});
+                }
+            }
+            assertFalse(rows.isEmpty(), plan.getKey());
+            long[] usages = new long[rows.size()];
+            long[] charges = new long[rows.size()];
+            long expectedTotal = 0;
+            for (int i = 0; i < usages.length; i++) {
+                usages[i] = rows.get(i)[0];
+                expectedTotal += rows.get(i)[1];
+            }
+            RatingEngine.rateAll(usages, charges, usages.length, plan.getValue());
+            for (int i = 0; i < usages.length; i++) {
+                assertEquals(rows.get(i)[1], charges[i], plan.getKey() + " " + usages[i]);
+            }
+            assertEquals(expectedTotal, RatingEngine.sum(charges, charges.length), plan.getKey());
+        }
+    }
+
+    private static List<String[]> goldenRows() throws IOException {
+        InputStream in = RatingEngineTest.class.getResourceAsStream("rating-golden.csv");
+        assertNotNull(in, "rating-golden.csv");
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            //header
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    rows.add(line.split(","));
+                }
+            }
+        }
+        return rows;
+    }
+
+}
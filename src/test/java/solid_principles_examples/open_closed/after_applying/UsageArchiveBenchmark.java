@@ -0,0 +1,124 @@
+package solid_principles_examples.open_closed.after_applying;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Queries on a month of calls in a UsageArchive against the same calls in the heap UsageHistory
+//The compression ratio, 16 bytes per raw record against the archive file, is printed at setup.
+//periodTotal is answered from footers, halfPeriodTotal decodes the block the window cuts,
+//scan decodes every record of a subscriber.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsageArchiveBenchmark {
+
+    private static final int SUBSCRIBERS = 10_000;
+
+    private static final BillingPeriod PERIOD = BillingPeriod.of(YearMonth.of(2022, 1));
+
+    @Param({"100", "5000"})
+    private int callsPerSubscriber;
+
+    @Param({"archive", "heap"})
+    private String implementation;
+
+    private Path file;
+
+    private UsageSource store;
+
+    private long from;
+
+    private long to;
+
+    @Setup
+    public void setUp() throws IOException {
+        from = PERIOD.fromEpochSecond();
+        to = PERIOD.toEpochSecond();
+        UsageHistory history = new UsageHistory();
+        long[] subscriberIds = new long[SUBSCRIBERS];
+        Random random = new Random(42);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscriberIds[i] = i;
+        }
+        //calls spread over the month in arrival order, most of them short
+        long spacing = (to - from) / callsPerSubscriber;
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            long begin = from;
+            for (int call = 0; call < callsPerSubscriber; call++) {
+                begin += random.nextInt((int) spacing);
+                history.add((long) i, begin, (long) (random.nextExponential() * 180));
+            }
+        }
+        if ("heap".equals(implementation)) {
+            store = history;
+            return;
+        }
+        file = Files.createTempFile("usage", ".archive");
+        UsageArchive.write(file, history, subscriberIds, PERIOD);
+        UsageArchive archive = UsageArchive.open(file);
+        long rawBytes = archive.getRecordCount() * 2 * Long.BYTES;
+        System.out.printf("%n%d records, raw %d bytes, archive %d bytes, %.2f bytes/record, ratio %.1fx%n",
+                archive.getRecordCount(), rawBytes, archive.getSizeInBytes(),
+                (double) archive.getSizeInBytes() / archive.getRecordCount(), (double) rawBytes / archive.getSizeInBytes());
+        store = archive;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long periodTotal() {
+        return store.sumAmounts(subscriberId(), from, to);
+    }
+
+    @Benchmark
+    public long halfPeriodTotal() {
+        return store.sumAmounts(subscriberId(), from, from + (to - from) / 2);
+    }
+
+    @Benchmark
+    public long scan() {
+        long[] sum = new long[1];
+        store.snapshot(subscriberId()).forEach(from, to, (begin, amount) -> sum[0] += begin ^ amount);
+        return sum[0];
+    }
+
+    private static Long subscriberId() {
+        return (long) ThreadLocalRandom.current().nextInt(SUBSCRIBERS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UsageArchiveBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,144 @@
+package solid_principles_examples.single_responsibility;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import solid_principles_examples.single_responsibility.after_applying.User;
+import solid_principles_examples.single_responsibility.after_applying.UserController;
+import solid_principles_examples.single_responsibility.after_applying.UserJsonReader;
+import solid_principles_examples.single_responsibility.after_applying.UserPersistenceService;
+import solid_principles_examples.single_responsibility.after_applying.UserValidator;
+
+//createUser end to end through the before_applying and the after_applying UserController
+//The two code bases differ in more than the split: before validates with two regexes compiled on every
+//call, after with a character scanner. The validation methods measure that difference on its own, the
+//rest of the gap is parsing, layering and storage. The forked JVM turns the UserCache off, createUser
+//never reads through it anyway.
+//Throughput gives ops/s, the latency methods give SampleTime percentiles (p0.99) in us, -prof gc the allocation rate.
+//Run through the benchmark profile: mvn -Pbenchmark verify
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + UserPersistenceService.CACHE_SIZE_PROPERTY + "=0")
+public class UserPipelineBenchmark {
+
+    private static final int DOCUMENTS = 4_096;
+
+    //share of documents that fail validation
+    @Param({"0", "10", "50"})
+    private int invalidPercent;
+
+    private String[] documents;
+
+    private int next;
+
+    private solid_principles_examples.single_responsibility.before_applying.UserController before;
+
+    private UserController after;
+
+    private final UserValidator validator = new UserValidator();
+
+    //the documents parsed, for the validation methods
+    private User[] users;
+
+    @Setup
+    public void setUp() throws IOException {
+        before = new solid_principles_examples.single_responsibility.before_applying.UserController();
+        after = new UserController();
+        documents = new String[DOCUMENTS];
+        users = new User[DOCUMENTS];
+        for (int i = 0; i < DOCUMENTS; i++) {
+            //spread the invalid documents evenly instead of bunching them at the start
+            boolean invalid = (i * invalidPercent) % 100 + invalidPercent >= 100;
+            String email = invalid ? "user" + i + "@email" : "user" + i + "@email.com";
+            documents[i] = "{\"name\": \"user" + i + "\", \"email\": \"" + email + "\", \"address\":\"" + i + " Sugar lane\"}";
+            users[i] = UserJsonReader.read(documents[i]);
+        }
+    }
+
+    @Benchmark
+    public String beforeApplying() throws IOException {
+        return before.createUser(nextDocument());
+    }
+
+    @Benchmark
+    public String afterApplying() throws IOException {
+        return after.createUser(nextDocument());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String beforeApplyingLatency() throws IOException {
+        return before.createUser(nextDocument());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String afterApplyingLatency() throws IOException {
+        return after.createUser(nextDocument());
+    }
+
+    @Benchmark
+    public boolean beforeApplyingValidation() {
+        return regexValidate(nextUser());
+    }
+
+    @Benchmark
+    public boolean afterApplyingValidation() {
+        return validator.validateUser(nextUser());
+    }
+
+    private String nextDocument() {
+        String document = documents[next];
+        next = (next + 1) & (DOCUMENTS - 1);
+        return document;
+    }
+
+    private User nextUser() {
+        User user = users[next];
+        next = (next + 1) & (DOCUMENTS - 1);
+        return user;
+    }
+
+    //The checks of before_applying UserController.isValidUser, which are private there, patterns compiled per call as there
+    private static boolean regexValidate(User user) {
+        String name = user.getName();
+        if (name == null || name.trim().length() == 0 || Pattern.compile("[^A-Za-z0-9]").matcher(name.trim()).find()) {
+            return false;
+        }
+        String email = user.getEmail();
+        if (email == null || email.trim().length() == 0) {
+            return false;
+        }
+        return Pattern.compile("^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$")
+                .matcher(email.trim()).find();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserPipelineBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,87 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Open-loop load against AsyncUserController - requests go out at a fixed rate whether or not earlier ones finished,
+//so overload shows up as queueing, rejections and latency instead of a silently lower send rate.
+//Latency is measured from the intended send time, which keeps a stalled sender from hiding delays.
+//Usage: AsyncUserLoadGenerator [requests/s] [seconds] [threads] [maxInFlight] [REJECT|WAIT]
+public class AsyncUserLoadGenerator {
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+        BackpressurePolicy policy = args.length > 4 ? BackpressurePolicy.valueOf(args[4]) : BackpressurePolicy.REJECT;
+
+        int requests = rate * seconds;
+        long[] latencies = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        LongAdder errors = new LongAdder();
+        LongAdder failures = new LongAdder();
+        LongAdder queued = new LongAdder();
+        LongAdder parse = new LongAdder();
+        LongAdder validate = new LongAdder();
+        LongAdder persist = new LongAdder();
+        CountDownLatch done = new CountDownLatch(requests);
+
+        try (AsyncUserController controller = new AsyncUserController(threads, maxInFlight, policy)) {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                long intended = start + i * intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                String email = i % 10 == 0 ? "user" + i + "@email" : "user" + i + "@email.com";
+                String json = "{\"name\": \"user" + i + "\", \"email\": \"" + email + "\", \"address\":\"" + i + " Sugar lane\"}";
+                controller.createUserAsync(json).whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        failures.increment();
+                    } else {
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - intended;
+                        if (!result.getValidationResult().isValid()) {
+                            errors.increment();
+                        }
+                        queued.add(result.getQueuedNanos());
+                        parse.add(result.getParseNanos());
+                        validate.add(result.getValidateNanos());
+                        persist.add(result.getPersistNanos());
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            long elapsed = System.nanoTime() - start;
+
+            int count = completed.get();
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("offered %d req/s for %ds, %d threads, %d in flight, %s%n", rate, seconds, threads, maxInFlight, policy);
+            System.out.printf("completed %d (%d invalid), failed %d (rejected %d, interrupted %d), throughput %.0f req/s%n",
+                    count, errors.sum(), failures.sum(), controller.getRejectedCount(), controller.getInterruptedCount(), count / (elapsed / 1e9));
+            System.out.printf("latency us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1.0));
+            if (count > 0) {
+                System.out.printf("avg stage us queued=%.1f parse=%.1f validate=%.1f persist=%.1f%n",
+                        queued.sum() / 1e3 / count, parse.sum() / 1e3 / count, validate.sum() / 1e3 / count, persist.sum() / 1e3 / count);
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+}
@@ -0,0 +1,107 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+//Bytes per user and GC pauses of the heap Store against the OffHeapUserStore
+//Each mode runs in its own JVM so the static Store map cannot skew the other run.
+//Usage: OffHeapUserStoreReport [users] [seconds]
+public class OffHeapUserStoreReport {
+
+    private static final int DEFAULT_USERS = 5_000_000;
+
+    private static final int DEFAULT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("heap") || args[0].equals("offheap"))) {
+            run(args[0].equals("offheap"), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USERS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String mode : new String[]{"heap", "offheap"}) {
+            new ProcessBuilder(java, "-Xmx4g", "-XX:MaxDirectMemorySize=4g", "-cp", System.getProperty("java.class.path"),
+                    OffHeapUserStoreReport.class.getName(), mode, String.valueOf(users), String.valueOf(seconds))
+                    .inheritIO().start().waitFor();
+        }
+    }
+
+    private static void run(boolean offHeap, int users, int seconds) throws InterruptedException {
+        List<Long> pauses = Collections.synchronizedList(new ArrayList<>());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        UserStorage storage = offHeap ? new OffHeapUserStore() : new Store();
+        for (int i = 0; i < users; i++) {
+            storage.store(new User("user" + i, "user" + i + "@email.com", i + " Sugar lane"));
+        }
+        System.gc();
+        long heapBytes = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+        long offHeapBytes = offHeap ? ((OffHeapUserStore) storage).getUsedBytes() : 0;
+
+        recordPauses(pauses);
+        //request-like garbage plus lookups, and a few full collections which have to walk the live heap
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long nextFullGc = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        long lookups = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 10_000; i++) {
+                User user = storage.getUser("user" + random.nextInt(users));
+                lookups += user == null ? 0 : 1;
+            }
+            if (System.nanoTime() > nextFullGc) {
+                System.gc();
+                nextFullGc = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+        Thread.sleep(500);
+
+        List<Long> sorted;
+        synchronized (pauses) {
+            sorted = new ArrayList<>(pauses);
+        }
+        Collections.sort(sorted);
+        System.out.printf("%-8s users=%d heap bytes/user=%.1f off-heap bytes/user=%.1f gc pauses=%d p99=%dms max=%dms lookups=%d%n",
+                offHeap ? "offheap" : "heap", users, (double) heapBytes / users, (double) offHeapBytes / users,
+                sorted.size(), percentile(sorted, 0.99), percentile(sorted, 1.0), lookups);
+    }
+
+    private static void recordPauses(List<Long> pauses) {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            //concurrent cycles run alongside the application and are not pauses
+            if (collector.getName().contains("Concurrent")) {
+                continue;
+            }
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    pauses.add(info.getGcInfo().getDuration());
+                }
+            }, null, null);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+}
@@ -0,0 +1,111 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Read and write throughput of Store against the previous synchronized HashMap
+//main() repeats the run for 1, 2, 4 ... availableProcessors threads to show how each scales
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+    private static final int USERS = 100_000;
+
+    @Param({"synchronized", "concurrent"})
+    private String implementation;
+
+    private SynchronizedStore synchronizedStore;
+
+    private Store store;
+
+    private User[] users;
+
+    //The Store implementation before it moved to ConcurrentHashMap
+    static class SynchronizedStore {
+
+        private final Map<String, User> storage = new HashMap<>();
+
+        void store(User user) {
+            synchronized (storage) {
+                storage.put(user.getName(), user);
+            }
+        }
+
+        User getUser(String name) {
+            synchronized (storage) {
+                return storage.get(name);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        synchronizedStore = new SynchronizedStore();
+        store = new Store();
+        users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new User("user" + i, "user" + i + "@email.com", i + " Sugar lane");
+            synchronizedStore.store(users[i]);
+            store.store(users[i]);
+        }
+    }
+
+    @Benchmark
+    public User read() {
+        String name = users[ThreadLocalRandom.current().nextInt(USERS)].getName();
+        return "concurrent".equals(implementation) ? store.getUser(name) : synchronizedStore.getUser(name);
+    }
+
+    @Benchmark
+    public void write() {
+        User user = users[ThreadLocalRandom.current().nextInt(USERS)];
+        if ("concurrent".equals(implementation)) {
+            store.store(user);
+        } else {
+            synchronizedStore.store(user);
+        }
+    }
+
+    //90% reads, 10% writes
+    @Benchmark
+    public User mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(10) == 0) {
+            write();
+            return null;
+        }
+        return read();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(StoreBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Email and address-prefix lookups through the Store indexes against scanning every user
+//The default 10M users need a large heap, use -p users=1000000 on smaller machines
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+public class StoreIndexBenchmark {
+
+    @Param({"10000000"})
+    private int users;
+
+    private Store store;
+
+    @Setup
+    public void setUp() {
+        store = new Store();
+        for (int i = 0; i < users; i++) {
+            store.store(new User("user" + i, "User" + i + "@Email.com", i + " Sugar lane"));
+        }
+    }
+
+    @Benchmark
+    public List<User> findByEmail() {
+        return store.findByEmail("user" + ThreadLocalRandom.current().nextInt(users) + "@email.com");
+    }
+
+    //Matches the address of user N only, the trailing space stops N0..N9 from matching
+    @Benchmark
+    public List<User> findByAddressPrefix() {
+        return store.findByAddressPrefix(ThreadLocalRandom.current().nextInt(users) + " ");
+    }
+
+    @Benchmark
+    public List<User> scanByEmail() {
+        String email = "user" + ThreadLocalRandom.current().nextInt(users) + "@email.com";
+        return store.getUsers().stream().filter(user -> user.getEmail().equalsIgnoreCase(email)).collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StoreIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,73 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//100k record import - looping createUser against one createUsers call, in records per second
+//One record in ten is invalid
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserControllerBatchBenchmark {
+
+    private static final int RECORDS = 100_000;
+
+    private UserController controller;
+
+    private String[] documents;
+
+    private byte[] ndjson;
+
+    @Setup
+    public void setUp() {
+        controller = new UserController();
+        documents = new String[RECORDS];
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            String email = i % 10 == 0 ? "user" + i + "@email" : "user" + i + "@email.com";
+            documents[i] = "{\"name\": \"user" + i + "\", \"email\": \"" + email + "\", \"address\":\"" + i + " Sugar lane\"}";
+            builder.append(documents[i]).append('\n');
+        }
+        ndjson = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void loopCreateUser(Blackhole blackhole) throws IOException {
+        for (String document : documents) {
+            blackhole.consume(controller.createUser(document));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public UserBatchResult batchCreateUsers() throws IOException {
+        return controller.createUsers(new ByteArrayInputStream(ndjson));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserControllerBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
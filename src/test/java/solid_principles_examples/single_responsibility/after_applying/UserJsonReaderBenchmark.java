@@ -0,0 +1,91 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Compares the old per-call ObjectMapper against the shared reader and the streaming path
+//Run with main() or the JMH runner, add -prof gc to see allocation per operation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserJsonReaderBenchmark {
+
+    private static final int DOCUMENTS = 1_000;
+
+    private static final String USER_JSON = "{\"name\": \"Randy\", \"email\": \"randy@email.com\", \"address\":\"110 Sugar lane\"}";
+
+    private String[] documents;
+
+    private byte[] ndjson;
+
+    @Setup
+    public void setUp() {
+        documents = new String[DOCUMENTS];
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            documents[i] = "{\"name\": \"Randy" + i + "\", \"email\": \"randy" + i + "@email.com\", \"address\":\"" + i + " Sugar lane\"}";
+            builder.append(documents[i]).append('\n');
+        }
+        ndjson = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public User perCallMapper() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.readValue(USER_JSON, User.class);
+    }
+
+    @Benchmark
+    public User sharedReader() throws IOException {
+        return UserJsonReader.read(USER_JSON);
+    }
+
+    //Many documents, each parsed from its own String with a fresh mapper
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void perCallMapperBulk(Blackhole blackhole) throws IOException {
+        for (String document : documents) {
+            blackhole.consume(new ObjectMapper().readValue(document, User.class));
+        }
+    }
+
+    //Same documents decoded from one byte stream
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void streamingReader(Blackhole blackhole) throws IOException {
+        try (MappingIterator<User> users = UserJsonReader.readAll(new ByteArrayInputStream(ndjson))) {
+            while (users.hasNextValue()) {
+                blackhole.consume(users.nextValue());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserJsonReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,100 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+//Differential test - the scanner must agree with the regex based validation it replaced
+class UserValidatorTest {
+
+    private static final Pattern SPECIAL_CHARACTERS = Pattern.compile("[^A-Za-z0-9]");
+
+    private static final Pattern EMAIL = Pattern.compile("^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$");
+
+    //Everything the regexes treat specially plus whitespace, line terminators and non ASCII letters
+    private static final char[] ALPHABET = ("aZm09_-+.@ \t\n\r,;!" + (char) 0x85 + (char) 0x2028 + (char) 0x2029 + (char) 0xE9 + (char) 0xA0).toCharArray();
+
+    private static final String[] FRAGMENTS = {"randy", "Sam", "email", "com", "co", "uk", "x", "1", "a-b", "a_b", "a+b", ".", "@", "..", " ", "\n"};
+
+    private final UserValidator validator = new UserValidator();
+
+    @Test
+    void knownInputs() {
+        assertAgrees("Randy", "randy@email.com");
+        assertAgrees("Sam", "sam@email");
+        assertAgrees("  Sam ", " sam.s@mail.co.uk\t");
+        assertAgrees("Sam S", "sam@email.com");
+        assertAgrees("", "sam@email.com");
+        assertAgrees(null, "sam@email.com");
+        assertAgrees("Sam", null);
+        assertAgrees("Sam", "   ");
+        assertAgrees("Sam", "a+b@x.com");
+        assertAgrees("Sam", "a.b+c@x.com");
+        assertAgrees("Sam", "a@b-c.d-e.com");
+        assertAgrees("Sam", "a@x.c0m");
+        assertAgrees("Sam", "a@x.com" + (char) 0x2028);
+        assertAgrees("Sam", "a@x.com" + (char) 0x2028 + (char) 0x2028);
+    }
+
+    @Test
+    void randomCharacters() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertAgrees(randomChars(random), randomChars(random));
+        }
+    }
+
+    @Test
+    void randomEmailShapedInputs() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            assertAgrees(randomFragments(random), randomFragments(random));
+        }
+    }
+
+    private void assertAgrees(String name, String email) {
+        User user = new User(name, email, "110 Sugar lane");
+        boolean expected = regexValidate(name, email);
+        ValidationResult result = validator.validate(user);
+        assertEquals(expected, result.isValid(), () -> "name=[" + name + "] email=[" + email + "] result=" + result);
+    }
+
+    //The original UserValidator.isValidUser
+    private static boolean regexValidate(String name, String email) {
+        if (name == null || name.trim().length() == 0) {
+            return false;
+        }
+        if (SPECIAL_CHARACTERS.matcher(name.trim()).find()) {
+            return false;
+        }
+        if (email == null || email.trim().length() == 0) {
+            return false;
+        }
+        return EMAIL.matcher(email.trim()).find();
+    }
+
+    private static String randomChars(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private static String randomFragments(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int fragments = random.nextInt(8);
+        for (int i = 0; i < fragments; i++) {
+            if (random.nextInt(10) == 0) {
+                builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            } else {
+                builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        return builder.toString();
+    }
+
+}
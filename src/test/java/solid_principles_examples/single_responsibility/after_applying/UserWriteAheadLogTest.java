@@ -0,0 +1,81 @@
+package solid_principles_examples.single_responsibility.after_applying;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    //Memory has to end up where a restart would put it, whichever writer wins the race
+    @Test
+    void concurrentSavesOfOneNameReplayToTheSameUser() throws Exception {
+        Map<String, User> memory = new ConcurrentHashMap<>();
+        try (UserWriteAheadLog log = UserWriteAheadLog.open(directory, DurabilityMode.ASYNC, user -> memory.put(user.getName(), user))) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                writers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 500; i++) {
+                            User user = new User("Sam", "sam" + writer + "-" + i + "@email.com", "1 Sugar lane");
+                            log.append(user, () -> memory.put(user.getName(), user));
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            start.countDown();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        Map<String, User> replayed = new ConcurrentHashMap<>();
+        UserWriteAheadLog.open(directory, DurabilityMode.ASYNC, user -> replayed.put(user.getName(), user)).close();
+        assertEquals(memory.get("Sam").getEmail(), replayed.get("Sam").getEmail());
+    }
+
+    //Documented behaviour: under GROUP_COMMIT the user is applied before its fsync, so readers can see it
+    //while the writer still waits and a failed flush does not take it back
+    @Test
+    void groupCommitAppliesBeforeTheFlush() throws Exception {
+        try (UserWriteAheadLog log = UserWriteAheadLog.open(directory, DurabilityMode.GROUP_COMMIT, user -> { })) {
+            AtomicBoolean unflushedWhenApplied = new AtomicBoolean();
+            log.append(new User("Sam", "sam@email.com", "1 Sugar lane"), () -> unflushedWhenApplied.set(log.hasUnflushedWrites()));
+            assertTrue(unflushedWhenApplied.get());
+            assertFalse(log.hasUnflushedWrites());
+        }
+    }
+
+    @Test
+    void zeroPeriodLeavesCompactionOffAndNegativeIsRejected() throws Exception {
+        try (UserWriteAheadLog log = UserWriteAheadLog.open(directory, DurabilityMode.ASYNC, user -> { })) {
+            log.startCompaction(List::of, 0, TimeUnit.SECONDS);
+            assertEquals(0, log.getCompactionPeriod(TimeUnit.SECONDS));
+            assertThrows(IllegalArgumentException.class, () -> log.startCompaction(List::of, -1, TimeUnit.SECONDS));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new UserPersistenceService(directory, DurabilityMode.ASYNC, -1));
+    }
+
+}